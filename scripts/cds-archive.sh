@@ -0,0 +1,53 @@
+#!/usr/bin/env bash
+# Unpack the application jar and train a class data sharing (AppCDS) archive for it.
+#
+#   scripts/cds-archive.sh unpack target/patient-0.0.1-SNAPSHOT.jar target/cds   # needs a JDK, for the jar tool
+#   scripts/cds-archive.sh train target/cds
+#   cd target/cds && java -XX:SharedArchiveFile=patient.jsa @app.args
+#
+# CDS only archives classes loaded from jars by the built-in class loaders, not those of the nested jars of an
+# executable jar, so the jar is unpacked, its classes packed in application.jar, and started from a plain class path
+# written to app.args. The archive is only used with the same class path and the same JVM build as the training run.
+# The training run starts the context without reaching the database and exits.
+set -euo pipefail
+
+unpack() {
+  local jar dir=$2
+  jar=$(realpath "$1")
+
+  rm -rf "$dir"
+  mkdir -p "$dir"
+  cd "$dir"
+
+  # The layers of the jar, merged back, are the jar unpacked
+  java -Djarmode=layertools -jar "$jar" extract --destination layers
+  for layer in layers/*/; do cp -r "$layer". .; done
+  rm -rf layers
+
+  jar --create --file application.jar -C BOOT-INF/classes .
+  rm -rf BOOT-INF/classes
+
+  # The classes, then the jars in the order of the index
+  {
+    printf -- '-cp application.jar'
+    sed -n 's/^- "\(.*\)"$/:\1/p' BOOT-INF/classpath.idx | tr -d '\n'
+    printf '\n%s\n' "$(sed -n 's/^Start-Class: *//p' META-INF/MANIFEST.MF | tr -d '\r')"
+  } > app.args
+}
+
+train() {
+  cd "$1"
+
+  java -XX:ArchiveClassesAtExit=patient.jsa -Xlog:cds=error \
+    -Dpatient.startup.training-run=true \
+    -Dspring.jpa.hibernate.ddl-auto=none \
+    -Dspring.jpa.properties.hibernate.temp.use_jdbc_metadata_defaults=false \
+    -Dspring.docker.compose.enabled=false \
+    @app.args
+}
+
+case "${1:-}" in
+  unpack) unpack "$2" "$3" ;;
+  train) train "$2" ;;
+  *) echo "Usage: $0 unpack <jar> <dir> | train <dir>" >&2; exit 1 ;;
+esac
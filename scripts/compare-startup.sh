@@ -0,0 +1,75 @@
+#!/usr/bin/env bash
+# Startup time, time to first request and resident memory of the builds of the patient service: the executable jar,
+# the unpacked jar with its class data sharing archive, and the native image when it has been built.
+#
+# Build, start the database, then compare:
+#   ./mvnw -DskipTests package                    # target/patient-0.0.1-SNAPSHOT.jar
+#   scripts/cds-archive.sh unpack target/patient-0.0.1-SNAPSHOT.jar target/cds
+#   scripts/cds-archive.sh train target/cds       # target/cds/patient.jsa
+#   ./mvnw -Pnative -DskipTests native:compile    # target/patient, optional
+#   docker compose up -d patientsql
+#   scripts/compare-startup.sh [runs]
+#
+# Each build is started runs times (5 by default) on PORT (18081). The startup time is the process uptime Spring Boot
+# logs when the application is started. The time to first request runs from the launch to the first successful
+# GET /patient/1, and the RSS is read right after it. DATASOURCE_URL overrides the database.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+PORT=${PORT:-18081}
+JAR=target/patient-0.0.1-SNAPSHOT.jar
+CDS=target/cds
+NATIVE=target/patient
+APP_ARGS=(--server.port="$PORT" --spring.docker.compose.enabled=false
+  "--spring.datasource.url=${DATASOURCE_URL:-jdbc:mysql://localhost:3307/mediscreen_patient?serverTimezone=UTC}")
+
+# Start a build runs times from a directory and print its mean startup time, time to first request and RSS
+measure() {
+  local name=$1 dir=$2
+  shift 2
+  local total_seconds=0 total_first_ms=0 total_rss=0
+
+  for run in $(seq "$RUNS"); do
+    local log launched
+    log=$(mktemp)
+    launched=$(date +%s%N)
+    (cd "$dir" && exec "$@" "${APP_ARGS[@]}") >"$log" 2>&1 &
+    local pid=$!
+
+    until curl -sf -o /dev/null "http://localhost:$PORT/patient/1"; do
+      if ! kill -0 "$pid" 2>/dev/null; then
+        echo "$name did not start, see $log" >&2
+        exit 1
+      fi
+      sleep 0.02
+    done
+
+    local first_ms seconds rss
+    first_ms=$((($(date +%s%N) - launched) / 1000000))
+    seconds=$(grep -o "process running for [0-9.]*" "$log" | grep -o "[0-9.]*$")
+    rss=$(ps -o rss= -p "$pid" | tr -d ' ')
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    rm "$log"
+
+    echo "$name run $run: started in ${seconds}s, first request after ${first_ms} ms, RSS $((rss / 1024)) MB"
+    total_seconds=$(awk "BEGIN {print $total_seconds + $seconds}")
+    total_first_ms=$((total_first_ms + first_ms))
+    total_rss=$((total_rss + rss))
+  done
+
+  awk "BEGIN {printf \"%s mean: started in %.3fs, first request after %d ms, RSS %d MB\n\", \
+    \"$name\", $total_seconds / $RUNS, $total_first_ms / $RUNS, $total_rss / $RUNS / 1024}"
+}
+
+[[ -f $JAR ]] || { echo "Missing $JAR, run ./mvnw -DskipTests package" >&2; exit 1; }
+[[ -f $CDS/patient.jsa ]] || { echo "Missing $CDS/patient.jsa, run scripts/cds-archive.sh" >&2; exit 1; }
+
+measure JVM . java -jar "$JAR"
+measure "JVM+CDS" "$CDS" java -XX:SharedArchiveFile=patient.jsa @app.args
+if [[ -x $NATIVE ]]; then
+  measure Native . "$NATIVE"
+else
+  echo "No $NATIVE, run ./mvnw -Pnative -DskipTests native:compile to compare the native image"
+fi
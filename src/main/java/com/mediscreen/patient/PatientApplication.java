@@ -1,9 +1,15 @@
 package com.mediscreen.patient;
 
+import com.mediscreen.patient.config.PatientRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
-@SpringBootApplication
+// The reactive profile configures R2DBC itself, see ReactiveConfig
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
+@ImportRuntimeHints(PatientRuntimeHints.class)
 public class PatientApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,185 @@
+package com.mediscreen.patient.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mediscreen.patient.dto.CacheStatsDTO;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import com.mediscreen.patient.model.NameNormalizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache of patient DTOs, looked up by id or by case and accent insensitive fullname.
+ * <p>
+ * The name cache only points to an id, so an entry evicted or changed by id can never be served by name.
+ * Cached DTOs are shared between callers and must not be modified. A patient loaded from the database is only
+ * cached if no patient was evicted while it was loaded, see {@link #generation()}.
+ */
+@Component
+public class PatientCache implements MeterBinder {
+
+    private final boolean enabled;
+
+    private final Cache<Integer, PatientDTO> byId;
+
+    private final Cache<String, Integer> byName;
+
+    /**
+     * Incremented by every eviction, so that a patient loaded before an eviction is not cached after it.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PatientCache(@Value("${patient.cache.enabled:true}") boolean enabled,
+                        @Value("${patient.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${patient.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.enabled = enabled;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.byName = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return true if patients are cached, false when patient.cache.enabled=false
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get a cached patient by ID.
+     *
+     * @param id the patient id
+     * @return the cached patient DTO, null if not cached
+     */
+    public PatientDTO getById(Integer id) {
+        if (!enabled) return null;
+        return byId.getIfPresent(id);
+    }
+
+    /**
+     * Get a cached patient by its fullname.
+     *
+     * @param family the patient family name
+     * @param given  the patient given name
+     * @return the cached patient DTO, null if not cached
+     */
+    public PatientDTO getByName(String family, String given) {
+        if (!enabled) return null;
+
+        String key = NameNormalizer.nameKey(family, given);
+        Integer id = byName.getIfPresent(key);
+        if (id == null) return null;
+
+        PatientDTO patientDTO = byId.getIfPresent(id);
+        if (patientDTO == null || !key.equals(NameNormalizer.nameKey(patientDTO.getFamily(), patientDTO.getGiven()))) {
+            // The patient was evicted or renamed since the name was cached
+            byName.invalidate(key);
+            return null;
+        }
+
+        return patientDTO;
+    }
+
+    /**
+     * Get the eviction generation, to read before loading a patient from the database and pass to
+     * {@link #put(PatientDTO, long)} with the loaded patient.
+     *
+     * @return the current eviction generation
+     */
+    public long generation() {
+        return evictions.get();
+    }
+
+    /**
+     * Cache a patient under its id and fullname, unless a patient was evicted since the given generation, as the
+     * loaded patient may then be older than the write that caused the eviction, or a newer version is already cached.
+     *
+     * @param patientDTO the patient DTO to cache
+     * @param generation the eviction generation read before loading the patient
+     */
+    public void put(PatientDTO patientDTO, long generation) {
+        if (!enabled || patientDTO == null || patientDTO.getId() == null) return;
+
+        // Under the lock of the id, which evict takes too: an eviction is either seen here or comes after the put
+        PatientDTO cachedPatient = byId.asMap().compute(patientDTO.getId(), (id, cached) -> {
+            if (evictions.get() != generation) return cached;
+            if (cached != null && cached.getVersion() != null && patientDTO.getVersion() != null
+                    && cached.getVersion() > patientDTO.getVersion()) return cached;
+            return patientDTO;
+        });
+        if (cachedPatient == patientDTO) {
+            byName.put(NameNormalizer.nameKey(patientDTO.getFamily(), patientDTO.getGiven()), patientDTO.getId());
+        }
+    }
+
+    /**
+     * Evict a patient by ID, its name entry becomes stale and is dropped on its next lookup.
+     *
+     * @param id the patient id
+     */
+    public void evict(Integer id) {
+        if (id == null) return;
+
+        byId.asMap().compute(id, (key, cached) -> {
+            evictions.incrementAndGet();
+            return null;
+        });
+    }
+
+    /**
+     * Evict all cached patients.
+     */
+    public void clear() {
+        evictions.incrementAndGet();
+        byId.invalidateAll();
+        byName.invalidateAll();
+    }
+
+    /**
+     * Get the hit, miss and eviction counters of the id and name caches.
+     *
+     * @return the statistics of each cache
+     */
+    public List<CacheStatsDTO> getStats() {
+        return List.of(toStatsDTO("patientById", byId), toStatsDTO("patientByName", byName));
+    }
+
+    /**
+     * Publish the size, hit, miss and eviction counters of both caches as cache.* meters.
+     *
+     * @param registry the meter registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, byId, "patientById");
+        CaffeineCacheMetrics.monitor(registry, byName, "patientByName");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event) {
+        if (event.getType() != PatientChangedEvent.Type.CREATED) evict(event.getPatientId());
+    }
+
+    private static CacheStatsDTO toStatsDTO(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDTO(name, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+}
@@ -0,0 +1,31 @@
+package com.mediscreen.patient.cache;
+
+import com.mediscreen.patient.config.SecondLevelCacheConfig;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Evicts the cached patient query results when patients are created.
+ * <p>
+ * Hibernate invalidates them on its own writes, but the bulk import inserts through JDBC, which Hibernate
+ * does not see. A cached lookup that found no patient would otherwise keep missing the imported one.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.second-level-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class PatientQueryCacheEvictor {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event) {
+        if (event.getType() == PatientChangedEvent.Type.CREATED) {
+            entityManagerFactory.getCache().unwrap(Cache.class).evictQueryRegion(SecondLevelCacheConfig.PATIENT_QUERY_REGION);
+        }
+    }
+}
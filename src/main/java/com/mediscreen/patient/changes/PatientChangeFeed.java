@@ -0,0 +1,199 @@
+package com.mediscreen.patient.changes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.patient.dto.PatientChangeDTO;
+import com.mediscreen.patient.dto.PatientChangesDTO;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.exception.ChangesExpiredException;
+import com.mediscreen.patient.model.PatientChange;
+import com.mediscreen.patient.repository.PatientChangeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the patient_change outbox in sequence order, with long polling for consumers that are up to date.
+ * <p>
+ * Changes are served by their feed sequence, which {@link PatientChangeRelay} gives them once committed, so a
+ * consumer never moves past a change committed later. Each request numbers the changes committed before it, and
+ * waiting requests are checked every poll interval, with one relay and one query while nothing new was recorded,
+ * so changes made through another instance of the service are seen too.
+ */
+@Component
+public class PatientChangeFeed implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientChangeFeed.class);
+
+    private final PatientChangeRepository patientChangeRepository;
+
+    private final PatientChangeRelay patientChangeRelay;
+
+    private final ObjectMapper objectMapper;
+
+    private final Duration pollInterval;
+
+    private final int maxChanges;
+
+    private final Duration retention;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "patient-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PatientChangeFeed(PatientChangeRepository patientChangeRepository,
+                             PatientChangeRelay patientChangeRelay,
+                             ObjectMapper objectMapper,
+                             @Value("${patient.changes.poll-interval:250ms}") Duration pollInterval,
+                             @Value("${patient.changes.max-changes:500}") int maxChanges,
+                             @Value("${patient.changes.retention:7d}") Duration retention) {
+        this.patientChangeRepository = patientChangeRepository;
+        this.patientChangeRelay = patientChangeRelay;
+        this.objectMapper = objectMapper;
+        this.pollInterval = pollInterval;
+        this.maxChanges = maxChanges;
+        this.retention = retention;
+        scheduler.scheduleWithFixedDelay(this::checkWaiters, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::deleteExpiredChanges, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Get the changes after a sequence number, without waiting.
+     *
+     * @param since the sequence of the last change already consumed, 0 to start from the oldest retained change
+     * @param limit the maximum number of changes, capped to the configured maximum
+     * @return the changes and the sequence to continue from
+     * @throws ChangesExpiredException if changes after this sequence were already deleted
+     */
+    public PatientChangesDTO getChanges(long since, int limit) {
+        relay();
+        return readChanges(since, limit);
+    }
+
+    private PatientChangesDTO readChanges(long since, int limit) {
+        if (since > 0) {
+            Long oldestSeq = patientChangeRepository.findOldestFeedSeq();
+            if (oldestSeq != null && since < oldestSeq - 1) {
+                throw new ChangesExpiredException("Changes after " + since + " are no longer retained, resync from /patient/all");
+            }
+        }
+
+        List<PatientChange> changes = patientChangeRepository.findByFeedSeqGreaterThanOrderByFeedSeqAsc(
+                since, PageRequest.of(0, Math.max(1, Math.min(limit, maxChanges))));
+
+        List<PatientChangeDTO> changeDTOs = changes.stream().map(this::toDTO).toList();
+        long nextSince = changeDTOs.isEmpty() ? since : changeDTOs.get(changeDTOs.size() - 1).getSeq();
+        return new PatientChangesDTO(changeDTOs, nextSince);
+    }
+
+    /**
+     * Get the changes after a sequence number, waiting for new ones if there are none yet.
+     *
+     * @param since the sequence of the last change already consumed
+     * @param limit the maximum number of changes
+     * @param wait  how long to wait for a change, an empty result is returned after it
+     * @return the deferred changes and sequence to continue from
+     * @throws ChangesExpiredException if changes after this sequence were already deleted
+     */
+    public DeferredResult<PatientChangesDTO> waitForChanges(long since, int limit, Duration wait) {
+        // The wait is ended by the poll, the request timeout is only a fallback
+        DeferredResult<PatientChangesDTO> result = new DeferredResult<>(wait.plus(pollInterval.multipliedBy(2)).toMillis(),
+                () -> new PatientChangesDTO(List.of(), since));
+
+        PatientChangesDTO changes = getChanges(since, limit);
+        if (!changes.getChanges().isEmpty() || wait.isZero()) {
+            result.setResult(changes);
+            return result;
+        }
+
+        Waiter waiter = new Waiter(since, limit, Instant.now().plus(wait), result);
+        result.onCompletion(() -> waiters.remove(waiter));
+        waiters.add(waiter);
+        return result;
+    }
+
+    private void checkWaiters() {
+        waiters.removeIf(waiter -> waiter.result().isSetOrExpired());
+        if (waiters.isEmpty()) return;
+
+        Instant now = Instant.now();
+        for (Waiter waiter : waiters) {
+            if (!now.isBefore(waiter.deadline())) {
+                waiter.result().setResult(new PatientChangesDTO(List.of(), waiter.since()));
+            }
+        }
+
+        try {
+            relay();
+            Long latestSeq = patientChangeRepository.findLatestFeedSeq();
+            if (latestSeq == null) return;
+
+            for (Waiter waiter : waiters) {
+                if (waiter.since() >= latestSeq || waiter.result().isSetOrExpired()) continue;
+
+                try {
+                    waiter.result().setResult(readChanges(waiter.since(), waiter.limit()));
+                } catch (RuntimeException e) {
+                    waiter.result().setErrorResult(e);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to check the patient changes of waiting requests", e);
+        }
+    }
+
+    /**
+     * Number the changes committed so far; if it fails, the ones already numbered are still served.
+     */
+    private void relay() {
+        try {
+            patientChangeRelay.relay();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to number the committed patient changes", e);
+        }
+    }
+
+    private void deleteExpiredChanges() {
+        try {
+            int deleted = patientChangeRepository.deleteChangedBefore(Instant.now().minus(retention));
+            if (deleted > 0) logger.info("Expired patient changes deleted count={}", deleted);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to delete the expired patient changes", e);
+        }
+    }
+
+    private PatientChangeDTO toDTO(PatientChange change) {
+        try {
+            PatientDTO patient = change.getPatient() == null ? null : objectMapper.readValue(change.getPatient(), PatientDTO.class);
+            return new PatientChangeDTO(change.getFeedSeq(), change.getType(), change.getPatientId(), patient, change.getChangedAt());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private record Waiter(long since, int limit, Instant deadline, DeferredResult<PatientChangesDTO> result) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.mediscreen.patient.changes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records every patient change in the patient_change outbox table, in the transaction of the change.
+ * <p>
+ * The changes of a transaction are collected and written in one JDBC batch just before it commits, so they are
+ * committed or rolled back with the patients, and a bulk import writes its outbox rows in batches too. The rows
+ * are served once {@link PatientChangeRelay} has numbered them, after their commit. The same statement batch
+ * increments the patient table version, which the ETag of the patient list is built from.
+ */
+@Component
+public class PatientChangeOutbox {
+
+    // The database clock, the same for every instance
+    private static final String INSERT_SQL = "INSERT INTO patient_change (change_type, patient_id, patient, changed_at) "
+            + "VALUES (?, ?, ?, CURRENT_TIMESTAMP(6))";
+
+    /**
+     * One increment per transaction, taken just before the commit so that the row lock is held briefly.
+     */
+    public static final String TABLE_VERSION_SQL = "UPDATE patient_table_version SET version = version + 1 WHERE id = 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @EventListener
+    public void onPatientChanged(PatientChangedEvent event) {
+        if (event.isRecorded()) return;
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            write(List.of(event));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<PatientChangedEvent> pending = (List<PatientChangedEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<PatientChangedEvent> transactionChanges = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, transactionChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    write(transactionChanges);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PatientChangeOutbox.this);
+                }
+            });
+            pending = transactionChanges;
+        }
+
+        pending.add(event);
+    }
+
+    private void write(List<PatientChangedEvent> events) {
+        List<Object[]> rows = new ArrayList<>(events.size());
+
+        for (PatientChangedEvent event : events) {
+            rows.add(new Object[]{event.getType().name(), event.getPatientId(), toJson(event)});
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        jdbcTemplate.update(TABLE_VERSION_SQL);
+    }
+
+    private String toJson(PatientChangedEvent event) {
+        if (event.getPatient() == null) return null;
+
+        try {
+            return objectMapper.writeValueAsString(event.getPatient());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mediscreen.patient.changes;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Numbers the committed outbox rows in the order the change feed serves them.
+ * <p>
+ * The seq of an outbox row is taken at its insert, so concurrent transactions commit their rows out of seq order: a
+ * consumer that had read past a seq would never see a lower one committed after. The relay gives the rows a feed_seq
+ * once they are committed, following the last one given, while holding the lock of the patient_change_relay row:
+ * one relay runs at a time across the instances, and a row committed later always gets a higher feed_seq.
+ */
+@Component
+public class PatientChangeRelay {
+
+    private static final String LOCK_SQL = "SELECT last_feed_seq FROM patient_change_relay WHERE id = 1 FOR UPDATE";
+
+    private static final String INIT_SQL = "INSERT INTO patient_change_relay (id, last_feed_seq) "
+            + "SELECT 1, COALESCE(MAX(feed_seq), 0) FROM patient_change";
+
+    private static final String SELECT_SQL = "SELECT seq FROM patient_change WHERE feed_seq IS NULL ORDER BY seq LIMIT ?";
+
+    private static final String NUMBER_SQL = "UPDATE patient_change SET feed_seq = ? WHERE seq = ?";
+
+    private static final String RELEASE_SQL = "UPDATE patient_change_relay SET last_feed_seq = ? WHERE id = 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${patient.changes.relay-batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Number the committed outbox rows not numbered yet, up to the batch size, in seq order.
+     *
+     * @return the number of rows numbered
+     */
+    public int relay() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            Long lastFeedSeq = lock();
+            if (lastFeedSeq == null) {
+                // First relay on this database; a concurrent one fails on the primary key and its next call relays
+                jdbcTemplate.update(INIT_SQL);
+                lastFeedSeq = lock();
+            }
+
+            // Read after the lock is taken: every row committed before it, and the numbers of the previous relay, are seen
+            List<Long> seqs = jdbcTemplate.queryForList(SELECT_SQL, Long.class, batchSize);
+            if (seqs.isEmpty()) return 0;
+
+            List<Object[]> rows = new ArrayList<>(seqs.size());
+            for (Long seq : seqs) rows.add(new Object[]{++lastFeedSeq, seq});
+            jdbcTemplate.batchUpdate(NUMBER_SQL, rows);
+            jdbcTemplate.update(RELEASE_SQL, lastFeedSeq);
+            return seqs.size();
+        });
+        return relayed == null ? 0 : relayed;
+    }
+
+    private Long lock() {
+        return jdbcTemplate.query(LOCK_SQL, resultSet -> resultSet.next() ? resultSet.getLong(1) : null);
+    }
+}
@@ -0,0 +1,67 @@
+package com.mediscreen.patient.config;
+
+import ch.qos.logback.classic.AsyncAppender;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.mediscreen.patient.controller.PatientController;
+import com.mediscreen.patient.dto.CacheStatsDTO;
+import com.mediscreen.patient.dto.ImportReportDTO;
+import com.mediscreen.patient.dto.PatientBatchDTO;
+import com.mediscreen.patient.dto.PatientChangesDTO;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.dto.PatientIntakeDTO;
+import com.mediscreen.patient.dto.PatientPageDTO;
+import com.mediscreen.patient.dto.PatientQueryPageDTO;
+import com.mediscreen.patient.dto.PatientStatsDTO;
+import com.mediscreen.patient.logging.EventSamplingTurboFilter;
+import com.mediscreen.patient.model.MapstructMapper;
+import com.mediscreen.patient.model.Patient;
+import com.mediscreen.patient.model.PatientChange;
+import com.mediscreen.patient.repository.PatientDobCount;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.data.projection.TargetAware;
+
+/**
+ * Reflection the native image needs and that the Spring AOT processing does not find on its own.
+ */
+public class PatientRuntimeHints implements RuntimeHintsRegistrar {
+
+    /**
+     * Schemas of the springdoc annotations of {@link PatientController}, introspected to build the OpenAPI document.
+     */
+    private static final Class<?>[] SCHEMA_TYPES = {PatientDTO.class, PatientBatchDTO.class, PatientPageDTO.class,
+            PatientQueryPageDTO.class, PatientStatsDTO.class, PatientChangesDTO.class, PatientIntakeDTO.class,
+            ImportReportDTO.class, CacheStatsDTO.class};
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Mappers.getMapper loads the MapStruct implementation by name and calls its constructor
+        hints.reflection().registerType(TypeReference.of(MapstructMapper.class.getName() + "Impl"),
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        // Hibernate reads and writes the entity fields, and builds proxies from the constructors
+        for (Class<?> entity : new Class<?>[]{Patient.class, PatientChange.class}) {
+            hints.reflection().registerType(entity, MemberCategory.DECLARED_FIELDS,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_DECLARED_METHODS);
+        }
+
+        // Spring Data returns the interface projection as a JDK proxy
+        hints.proxies().registerJdkProxy(AopProxyUtils.completeJdkProxyInterfaces(PatientDobCount.class, TargetAware.class));
+        hints.reflection().registerType(PatientDobCount.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        // springdoc reads the annotations of the handler methods and introspects the schemas they name
+        hints.reflection().registerType(PatientController.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), SCHEMA_TYPES);
+
+        // Classes named in logback-spring.xml and in the second-level cache configuration
+        hints.reflection().registerType(EventSamplingTurboFilter.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerType(AsyncAppender.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        hints.reflection().registerType(CaffeineCachingProvider.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+    }
+}
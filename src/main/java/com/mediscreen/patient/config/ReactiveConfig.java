@@ -0,0 +1,67 @@
+package com.mediscreen.patient.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Non-blocking stack of the reactive profile: R2DBC connection pool and Netty event-loop server.
+ * <p>
+ * The R2DBC auto-configuration is excluded from the application so that its transaction manager does not
+ * replace the JPA one, which the blocking beans still use in this profile. For the same reason the pool is
+ * not exposed as a ConnectionFactory bean: the JDBC DataSource auto-configuration backs off when one exists,
+ * and the R2DBC transaction manager is only used through the TransactionalOperator of the reactive writes.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig implements DisposableBean {
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient databaseClient(@Value("${patient.r2dbc.url}") String url,
+                                         @Value("${patient.r2dbc.username:}") String username,
+                                         @Value("${patient.r2dbc.password:}") String password,
+                                         @Value("${patient.r2dbc.pool.max-size:10}") int maxSize) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty()) options.option(ConnectionFactoryOptions.USER, username);
+        if (!password.isEmpty()) options.option(ConnectionFactoryOptions.PASSWORD, password);
+
+        ConnectionPoolConfiguration configuration = ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get(options.build()))
+                .maxSize(maxSize)
+                .build();
+        connectionPool = new ConnectionPool(configuration);
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(DatabaseClient databaseClient) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(databaseClient.getConnectionFactory()));
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+
+    /**
+     * Serve on Netty rather than on Tomcat, which is also on the classpath for the servlet stack.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
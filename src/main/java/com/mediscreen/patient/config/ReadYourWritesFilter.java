@@ -0,0 +1,95 @@
+package com.mediscreen.patient.config;
+
+import com.mediscreen.patient.event.PatientChangedEvent;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Pins the requests of a client to the primary for a short window after its own writes, so that it does not read
+ * from a replica that has not caught up yet.
+ * <p>
+ * Once a transaction of a request has committed a patient change, the rest of the request runs on the primary and
+ * the response sets a cookie with the end of the window; the requests sending that cookie back run on the primary
+ * until then, and never for longer than the window. Requests that write nothing, such as a batch lookup or a
+ * rejected update, are not pinned. Work handed to another thread, such as a streamed export or the asynchronous
+ * intake, is not pinned.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "patient-primary-until";
+
+    private static final String WROTE_ATTRIBUTE = ReadYourWritesFilter.class.getName() + ".wrote";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (pinnedUntil(request) <= System.currentTimeMillis()) {
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                // Pinned by a write of this request
+                ReplicaRoutingDataSource.setPinnedToPrimary(false);
+            }
+            return;
+        }
+
+        ReplicaRoutingDataSource.setPinnedToPrimary(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.setPinnedToPrimary(false);
+        }
+    }
+
+    /**
+     * Set the cookie of the request whose transaction committed the change, before its response is written.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) return;
+
+        HttpServletRequest request = attributes.getRequest();
+        HttpServletResponse response = attributes.getResponse();
+        if (response == null || response.isCommitted() || request.getAttribute(WROTE_ATTRIBUTE) != null) return;
+        request.setAttribute(WROTE_ATTRIBUTE, Boolean.TRUE);
+
+        Cookie cookie = new Cookie(COOKIE_NAME, String.valueOf(System.currentTimeMillis() + window.toMillis()));
+        cookie.setMaxAge((int) Math.max(1, window.toSeconds()));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+        ReplicaRoutingDataSource.setPinnedToPrimary(true);
+    }
+
+    private long pinnedUntil(HttpServletRequest request) {
+        if (request.getCookies() == null) return 0;
+
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    // A value past the window was not set by this filter
+                    return Math.min(Long.parseLong(cookie.getValue()), System.currentTimeMillis() + window.toMillis());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
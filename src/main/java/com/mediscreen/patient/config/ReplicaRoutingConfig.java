@@ -0,0 +1,105 @@
+package com.mediscreen.patient.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes the read-only transactions to read replicas, when patient.replica.enabled=true.
+ * <p>
+ * The primary is spring.datasource.url and the replicas patient.replica.urls, all pooled with the
+ * spring.datasource.hikari settings. A client reads from the primary for patient.replica.read-your-writes-window
+ * after its own writes, see {@link ReadYourWritesFilter}. The caches shared by all clients are only filled from
+ * the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.replica.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingConfig.class);
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                             ObjectProvider<MeterRegistry> meterRegistry,
+                                                             @Value("${patient.replica.urls}") List<String> replicaUrls,
+                                                             @Value("${patient.replica.username:${spring.datasource.username:}}") String replicaUsername,
+                                                             @Value("${patient.replica.password:${spring.datasource.password:}}") String replicaPassword,
+                                                             @Value("${patient.replica.selection:round-robin}") ReplicaRoutingDataSource.Selection selection) {
+        HikariDataSource primary = pool(properties, environment, meterRegistry, "patient-primary",
+                properties.determineUrl(), properties.determineUsername(), properties.determinePassword());
+
+        List<DataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (String replicaUrl : replicaUrls) {
+            HikariDataSource replica = pool(properties, environment, meterRegistry, "patient-replica-" + replicas.size(),
+                    replicaUrl, replicaUsername, replicaPassword);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+
+        logger.info("Read-only transactions are routed to {} replicas, {}", replicas.size(), selection);
+        return new ReplicaRoutingDataSource(primary, replicas, selection);
+    }
+
+    /**
+     * The application DataSource: takes the connection at the first statement, once the transaction is known
+     * to be read-only or not.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Replaces the JPA transaction manager of Spring Boot, to keep the replica reads out of the Hibernate caches.
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+        ReplicaRoutingTransactionManager transactionManager = new ReplicaRoutingTransactionManager();
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${patient.replica.read-your-writes-window:5s}") Duration window) {
+        return new ReadYourWritesFilter(window);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Environment environment,
+                                         ObjectProvider<MeterRegistry> meterRegistry, String poolName,
+                                         String url, String username, String password) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(poolName);
+        // The pools are not beans, so the hikaricp meters are bound here
+        meterRegistry.ifAvailable(registry -> dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        return dataSource;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mediscreen.patient.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * DataSource sending the read-only transactions to the replicas, and everything else to the primary.
+ * <p>
+ * The target is chosen when a connection is taken, so this must sit behind a LazyConnectionDataSourceProxy: the
+ * transaction managers take their connection before the transaction is marked read-only, the proxy defers it to
+ * the first statement. A thread pinned to the primary with {@link #setPinnedToPrimary(boolean)} reads its own writes.
+ * <p>
+ * The shared caches must only be filled from the primary, or a lagging replica would put back a row that a write
+ * just evicted, for every client: the Hibernate caches are not filled in replica transactions, see
+ * {@link ReplicaRoutingTransactionManager}, and the patient cache is filled with {@link #readFromPrimary(Supplier)}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public enum Selection {
+        /**
+         * Each replica in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * The replica with the fewest connections in use, for Hikari pools; in turn between equally loaded ones.
+         */
+        LEAST_LOADED
+    }
+
+    private static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> pinnedToPrimary = new ThreadLocal<>();
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final Selection selection;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Selection selection) {
+        if (replicas.isEmpty()) throw new IllegalArgumentException("At least one replica is needed");
+
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.selection = selection;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) targets.put(i, replicas.get(i));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * Send every transaction of the current thread to the primary, or stop doing so.
+     */
+    public static void setPinnedToPrimary(boolean pinned) {
+        if (pinned) pinnedToPrimary.set(true);
+        else pinnedToPrimary.remove();
+    }
+
+    /**
+     * @return true if the transactions of the current thread are sent to the primary
+     */
+    public static boolean isPinnedToPrimary() {
+        return pinnedToPrimary.get() != null;
+    }
+
+    /**
+     * Run a read on the primary, whether the current thread is pinned or not, and leave the pin as it was.
+     *
+     * @param read the read, with its own transactions
+     * @return the result of the read
+     */
+    public static <T> T readFromPrimary(Supplier<T> read) {
+        if (isPinnedToPrimary()) return read.get();
+
+        setPinnedToPrimary(true);
+        try {
+            return read.get();
+        } finally {
+            setPinnedToPrimary(false);
+        }
+    }
+
+    /**
+     * @return true if a transaction starting now with the given read-only flag would run on a replica
+     */
+    static boolean routesToReplica(boolean readOnly) {
+        return readOnly && !isPinnedToPrimary();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!routesToReplica(TransactionSynchronizationManager.isCurrentTransactionReadOnly())) return PRIMARY;
+        return selectReplica();
+    }
+
+    private int selectReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        if (selection == Selection.ROUND_ROBIN) return start;
+
+        int selected = start;
+        int fewestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = (start + i) % replicas.size();
+            int active = activeConnections(replicas.get(replica));
+            if (active < fewestActive) {
+                selected = replica;
+                fewestActive = active;
+            }
+        }
+        return selected;
+    }
+
+    private static int activeConnections(DataSource dataSource) {
+        // The Hikari pool only starts with its first connection
+        HikariPoolMXBean pool = dataSource instanceof HikariDataSource hikari ? hikari.getHikariPoolMXBean() : null;
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    /**
+     * Close the pools of the primary and the replicas.
+     */
+    @Override
+    public void close() {
+        List<DataSource> dataSources = new ArrayList<>(replicas);
+        dataSources.add(primary);
+
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("Failed to close " + dataSource, e);
+                }
+            }
+        }
+    }
+}
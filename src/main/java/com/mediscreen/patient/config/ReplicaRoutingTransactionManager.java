@@ -0,0 +1,43 @@
+package com.mediscreen.patient.config;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA transaction manager whose transactions routed to a replica read the Hibernate second-level and query caches
+ * but never fill them, so that the cached rows always come from the primary.
+ * <p>
+ * The cache mode is set on the session at the start of the transaction and reset at its end, as the session can
+ * outlive it when it is opened for the whole request.
+ */
+public class ReplicaRoutingTransactionManager extends JpaTransactionManager {
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+
+        Session session = currentSession();
+        if (session != null && ReplicaRoutingDataSource.routesToReplica(definition.isReadOnly())) {
+            session.setCacheMode(CacheMode.GET);
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        Session session = currentSession();
+        if (session != null && session.isOpen() && session.getCacheMode() == CacheMode.GET) {
+            session.setCacheMode(CacheMode.NORMAL);
+        }
+
+        super.doCleanupAfterCompletion(transaction);
+    }
+
+    private Session currentSession() {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+        return holder == null ? null : holder.getEntityManager().unwrap(Session.class);
+    }
+}
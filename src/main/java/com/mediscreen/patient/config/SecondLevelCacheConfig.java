@@ -0,0 +1,82 @@
+package com.mediscreen.patient.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level and query cache, held in Caffeine through JCache.
+ * <p>
+ * The regions are created here with their size and time to live, and Hibernate fails to start if an entity
+ * or query refers to another region. Every application context gets its own cache manager, so that test
+ * contexts sharing a JVM never share cached rows. Hibernate statistics are on, for the hibernate.* meters.
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.second-level-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class SecondLevelCacheConfig implements DisposableBean {
+
+    /**
+     * Region of the Patient entities.
+     */
+    public static final String PATIENT_REGION = "patient";
+
+    /**
+     * Region of the cached patient query results, which hold ids resolved through the entity region.
+     */
+    public static final String PATIENT_QUERY_REGION = "patient-queries";
+
+    private CacheManager cacheManager;
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            @Value("${patient.second-level-cache.entity.maximum-size:10000}") long entityMaximumSize,
+            @Value("${patient.second-level-cache.entity.expire-after-write:10m}") Duration entityExpireAfterWrite,
+            @Value("${patient.second-level-cache.query.maximum-size:1000}") long queryMaximumSize,
+            @Value("${patient.second-level-cache.query.expire-after-write:5m}") Duration queryExpireAfterWrite) {
+        cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("patient-second-level-cache-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        createRegion(PATIENT_REGION, OptionalLong.of(entityMaximumSize), entityExpireAfterWrite);
+        createRegion(PATIENT_QUERY_REGION, OptionalLong.of(queryMaximumSize), queryExpireAfterWrite);
+        createRegion(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, OptionalLong.of(queryMaximumSize), queryExpireAfterWrite);
+        // Never evicted: a cached query result is only used while newer than the last write to its tables
+        createRegion(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, OptionalLong.empty(), null);
+
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    private void createRegion(String name, OptionalLong maximumSize, Duration expireAfterWrite) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maximumSize);
+        if (expireAfterWrite != null) configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+        configuration.setStatisticsEnabled(true);
+        cacheManager.createCache(name, configuration);
+    }
+
+    @Override
+    public void destroy() {
+        if (cacheManager != null) cacheManager.close();
+    }
+}
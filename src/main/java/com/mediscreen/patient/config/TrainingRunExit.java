@@ -0,0 +1,30 @@
+package com.mediscreen.patient.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ends a training run, when patient.startup.training-run=true: the application exits as soon as its context is
+ * started, once the classes of the startup have been loaded, the Hibernate EntityManagerFactory and the repository
+ * proxies included, so that the JVM can archive them for class data sharing. The ready listeners, which read the
+ * database, do not run.
+ * <p>
+ * The context is closed before exiting, outside of its refresh, so that the shutdown hook does not wait on it.
+ */
+@Component
+@ConditionalOnProperty(name = "patient.startup.training-run", havingValue = "true")
+public class TrainingRunExit implements ApplicationListener<ApplicationStartedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrainingRunExit.class);
+
+    @Override
+    public void onApplicationEvent(ApplicationStartedEvent event) {
+        logger.info("Training run started in {} ms, exiting", event.getTimeTaken().toMillis());
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
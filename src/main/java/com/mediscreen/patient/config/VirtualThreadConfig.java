@@ -0,0 +1,60 @@
+package com.mediscreen.patient.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the requests on virtual threads instead of the Tomcat platform thread pool, when patient.threads.virtual=true.
+ * <p>
+ * The number of connections used at once is bounded by patient.threads.db-concurrency-limit, which should not
+ * exceed the Hikari pool size.
+ */
+@Configuration
+@ConditionalOnProperty(name = "patient.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        logger.info("Requests run on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Executor of the asynchronous requests, such as the streamed exports.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean
+    public static BeanPostProcessor dbConcurrencyLimiter(@Value("${patient.threads.db-concurrency-limit:10}") int limit,
+                                                         @Value("${patient.threads.db-acquire-timeout:5s}") Duration acquireTimeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // The replica routing DataSource is limited through the proxy in front of it
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitedDataSource)
+                        && !(bean instanceof ReplicaRoutingDataSource)) {
+                    return new ConcurrencyLimitedDataSource(dataSource, limit, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.mediscreen.patient.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary representations of the patient responses for the internal callers, chosen with the Accept header:
+ * Smile (application/x-jackson-smile), the most compact, and CBOR (application/cbor), readable without Jackson.
+ * The JSON converter comes first, so JSON stays the default.
+ * <p>
+ * Both keep the Jackson settings of the JSON responses but write the dates as [year, month, day] arrays, and Smile
+ * refers back to the property names and short values it has already written instead of repeating them. The ETags
+ * of the Smile and CBOR responses are tagged with their format, see {@link #representationETag}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    /**
+     * The formats of the patient responses, in the order of their converters.
+     */
+    private static final List<MediaType> FORMATS = List.of(MediaType.APPLICATION_JSON, SMILE, MediaType.APPLICATION_CBOR);
+
+    /**
+     * Tag an ETag with the format the response will be written in, so that each representation of a URL has its own
+     * validator: a cache revalidating its JSON copy for a CBOR request must not get a 304. JSON ETags are unchanged.
+     *
+     * @param etag       the ETag of the resource state
+     * @param webRequest the request, for its Accept header
+     * @return the ETag of the representation
+     */
+    public static String representationETag(String etag, WebRequest webRequest) {
+        MediaType format = negotiatedFormat(webRequest.getHeader(HttpHeaders.ACCEPT));
+        if (SMILE.equals(format)) return etag + "-smile";
+        if (MediaType.APPLICATION_CBOR.equals(format)) return etag + "-cbor";
+        return etag;
+    }
+
+    /**
+     * The format picked like the converters do: the first one compatible with the most specific accepted type.
+     */
+    private static MediaType negotiatedFormat(String accept) {
+        if (accept == null || accept.isBlank()) return MediaType.APPLICATION_JSON;
+
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptedTypes);
+
+        for (MediaType acceptedType : acceptedTypes) {
+            for (MediaType format : FORMATS) {
+                if (acceptedType.isCompatibleWith(format)) return format;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    /**
+     * Replaces the default Smile converter, which does not get the application Jackson settings.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        return new MappingJackson2SmileHttpMessageConverter(binaryMapper(builder, factory));
+    }
+
+    /**
+     * Replaces the default CBOR converter, which does not get the application Jackson settings.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(binaryMapper(builder, new CBORFactory()));
+    }
+
+    private static ObjectMapper binaryMapper(Jackson2ObjectMapperBuilder builder, JsonFactory factory) {
+        return builder.factory(factory)
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    /**
+     * The same URL has a representation per format, tell the caches to key them on the Accept header.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                return true;
+            }
+        }).addPathPatterns("/patient/**");
+    }
+}
@@ -1,6 +1,23 @@
 package com.mediscreen.patient.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.patient.cache.PatientCache;
+import com.mediscreen.patient.changes.PatientChangeFeed;
+import com.mediscreen.patient.config.WireFormatConfig;
+import com.mediscreen.patient.dto.CacheStatsDTO;
+import com.mediscreen.patient.dto.ImportReportDTO;
+import com.mediscreen.patient.dto.PatientBatchDTO;
+import com.mediscreen.patient.dto.PatientChangesDTO;
 import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.dto.PatientIntakeDTO;
+import com.mediscreen.patient.dto.PatientFilterDTO;
+import com.mediscreen.patient.dto.PatientPageDTO;
+import com.mediscreen.patient.dto.PatientQueryPageDTO;
+import com.mediscreen.patient.dto.PatientStatsDTO;
+import com.mediscreen.patient.intake.PatientIntakeQueue;
+import com.mediscreen.patient.logging.PatientLogEvents;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,38 +27,70 @@ import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.mediscreen.patient.service.PatientService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 public class PatientController {
 
     @Autowired
     private PatientService patientService;
 
+    @Autowired
+    private PatientCache patientCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PatientChangeFeed patientChangeFeed;
+
+    @Autowired
+    private PatientIntakeQueue patientIntakeQueue;
+
+    @Value("${patient.changes.max-wait:30s}")
+    private Duration maxChangesWait;
+
     private static Logger logger = LoggerFactory.getLogger(PatientController.class);
 
     /**
-     * Get a patient by ID.
+     * Get a patient by ID. The response carries an ETag of the patient version, a request whose If-None-Match
+     * still matches it gets a 304 without body.
      *
-     * @param id - the patient id
-     * @return A PatientDto object
+     * @param id         - the patient id
+     * @param webRequest - the request, for the conditional headers
+     * @return A PatientDto object, null when not modified
      */
     @Operation(summary = "Get a patient by its id")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found patient", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientDTO.class)) }),
+            @ApiResponse(responseCode = "304", description = "Patient not modified", content = @Content),
             @ApiResponse(responseCode = "404", description = "Patient not found", content = @Content)
     })
     @GetMapping(value = "/patient/{id}")
-    public PatientDTO getPatientById(@PathVariable Integer id) {
-        logger.info("Patient " + id + " requested");
-        return patientService.getPatientById(id);
+    public PatientDTO getPatientById(@PathVariable Integer id, WebRequest webRequest) {
+        logger.debug(PatientLogEvents.READ, "Patient requested id={}", id);
+        PatientDTO patientDTO = patientService.getPatientById(id);
+
+        String etag = WireFormatConfig.representationETag(patientDTO.getId() + "-" + patientDTO.getVersion(), webRequest);
+        if (webRequest.checkNotModified(etag)) return null;
+        return patientDTO;
     }
 
     /**
@@ -59,50 +108,220 @@ public class PatientController {
     @GetMapping(value = "/patient")
     public PatientDTO getPatientByName(@RequestParam("family") String family,
                                        @RequestParam("given") String given) {
-        logger.info("Patient " + family + given + " requested");
+        logger.debug(PatientLogEvents.READ, "Patient requested by name");
         return patientService.getPatientByName(family, given);
     }
 
     /**
-     * Get all patients.
+     * Get all patients. The response carries an ETag of the state of the whole list, checked before reading
+     * the patients and in the same transaction, so a request whose If-None-Match still matches it gets a 304
+     * without reading the table, and the ETag always describes the list it comes with.
      *
-     * @return A list of PatientDto object
+     * @param webRequest - the request, for the conditional headers
+     * @return A list of PatientDto object, null when not modified
      */
     @Operation(summary = "Get all patients ")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Found all patient", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientDTO.class)) }),
+            @ApiResponse(responseCode = "304", description = "Patients not modified", content = @Content),
             @ApiResponse(responseCode = "404", description = "Patients not found", content = @Content)
     })
     @GetMapping(value = "/patient/all")
-    public List<PatientDTO> getPatientList() {
-        logger.info("List of Patients requested");
-        return patientService.getAllPatients();
+    public List<PatientDTO> getPatientList(WebRequest webRequest) {
+        logger.debug(PatientLogEvents.READ, "All patients requested");
+
+        return patientService.getAllPatientsIfModified(version ->
+                webRequest.checkNotModified(WireFormatConfig.representationETag("all-" + version, webRequest)));
     }
 
     /**
-     * Save a new patient.
+     * Get several patients by their IDs in one request.
+     *
+     * @param ids - the patient ids
+     * @return A PatientBatchDto object with the found patients and the missing ids
+     */
+    @Operation(summary = "Get several patients by their ids")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found patients and missing ids", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientBatchDTO.class)) }),
+            @ApiResponse(responseCode = "400", description = "Too many ids", content = @Content)
+    })
+    @PostMapping(value = "/patient/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public PatientBatchDTO getPatientsByIds(@RequestBody List<Integer> ids) {
+        logger.debug(PatientLogEvents.READ, "Patient batch requested size={}", ids.size());
+        return patientService.getPatientsByIds(ids);
+    }
+
+    /**
+     * Get a page of patients, ordered by ID.
+     *
+     * @param cursor - the cursor of the page, returned with the previous page
+     * @param size   - the number of patients per page
+     * @return A PatientPageDto object with the patients and the next cursor
+     */
+    @Operation(summary = "Get a page of patients")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found page of patients", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientPageDTO.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor", content = @Content)
+    })
+    @GetMapping(value = "/patient/page")
+    public PatientPageDTO getPatientPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                         @RequestParam(value = "size", defaultValue = "50") int size) {
+        logger.debug(PatientLogEvents.READ, "Patient page requested size={}", size);
+        return patientService.getPatientPage(cursor, size);
+    }
+
+    /**
+     * Get a page of the patients matching the filters, ordered by ID, with only the requested fields.
+     *
+     * @param filter - the sex, date of birth range and address or phone prefix, each one optional
+     * @param fields - the fields to return, all of them when empty; the id is always returned
+     * @param cursor - the cursor of the page, returned with the previous page
+     * @param size   - the number of patients per page
+     * @return A PatientQueryPageDto object with the patient fields and the next cursor
+     */
+    @Operation(summary = "Get a page of filtered patients with the requested fields")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found page of patients", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientQueryPageDTO.class)) }),
+            @ApiResponse(responseCode = "400", description = "Unknown field or invalid cursor", content = @Content)
+    })
+    @GetMapping(value = "/patient/query")
+    public PatientQueryPageDTO queryPatients(@ModelAttribute PatientFilterDTO filter,
+                                             @RequestParam(value = "fields", required = false) List<String> fields,
+                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                             @RequestParam(value = "size", defaultValue = "50") int size) {
+        logger.debug(PatientLogEvents.READ, "Patient query requested size={}", size);
+        return patientService.queryPatients(filter, fields, cursor, size);
+    }
+
+    /**
+     * Search patients by names or name prefixes.
+     *
+     * @param query - the searched names or name prefixes
+     * @param limit - the maximum number of patients
+     * @return A list of PatientDto object, best matches first
+     */
+    @Operation(summary = "Search patients by names or name prefixes")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Matching patients", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientDTO.class)) })
+    })
+    @GetMapping(value = "/patient/search")
+    public List<PatientDTO> searchPatients(@RequestParam("q") String query,
+                                           @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        logger.debug(PatientLogEvents.READ, "Patient search requested limit={}", limit);
+        return patientService.searchPatients(query, limit);
+    }
+
+    /**
+     * Export all patients as newline-delimited JSON, streamed one patient at a time.
+     *
+     * @return the streamed response body
+     */
+    @Operation(summary = "Export all patients as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patients exported", content = { @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = PatientDTO.class)) })
+    })
+    @GetMapping(value = "/patient/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPatients() {
+        logger.debug(PatientLogEvents.BULK, "Patient export requested");
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                long count = patientService.exportPatients(patientDTO -> {
+                    try {
+                        generator.writeObject(patientDTO);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                logger.info(PatientLogEvents.BULK, "Patients exported count={}", count);
+            }
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Save a new patient. When the asynchronous intake is enabled, the patient is validated and queued instead.
      *
      * @param patientDTO    - the new patient to add
-     * @return the response entity with the message
+     * @return the response entity with the message, or the tracking token of the queued patient
      */
     @Operation(summary = "Save a patient")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Patient added successfully", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientDTO.class)) }),
+            @ApiResponse(responseCode = "202", description = "Patient queued, its status is at the Location", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientIntakeDTO.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid patient, when queued", content = @Content),
+            @ApiResponse(responseCode = "429", description = "Intake queue full, retry later", content = @Content),
             @ApiResponse(responseCode = "500", description = "Failed to add patient", content = @Content)
     })
     @PostMapping(value = "/patient/add", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
-    public ResponseEntity<String> addPatient(@ModelAttribute PatientDTO patientDTO) {
-        logger.info("Adding new patient: " + patientDTO.getGiven() + " " + patientDTO.getFamily());
+    public ResponseEntity<?> addPatient(@ModelAttribute PatientDTO patientDTO) {
+        logger.debug(PatientLogEvents.WRITE, "Patient creation requested");
+
+        if (patientIntakeQueue.isEnabled()) {
+            PatientIntakeDTO intake = patientIntakeQueue.enqueue(patientDTO);
+            return ResponseEntity.accepted().location(URI.create("/patient/intake/" + intake.getToken())).body(intake);
+        }
 
         //Check if the patient is saved
         if (patientService.addPatient(patientDTO)) {
-            logger.info("created patient: " + patientDTO.getGiven() + " " + patientDTO.getFamily());
             return ResponseEntity.status(HttpStatus.CREATED).body("Patient added successfully");
         } else {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to add patient");
         }
     }
 
+    /**
+     * Get the status of a patient queued by the asynchronous intake.
+     *
+     * @param token - the tracking token returned when the patient was queued
+     * @return A PatientIntakeDto object with the status and the id of the saved patient
+     */
+    @Operation(summary = "Get the status of a queued patient")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Status found", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientIntakeDTO.class)) }),
+            @ApiResponse(responseCode = "404", description = "Unknown or expired token", content = @Content)
+    })
+    @GetMapping(value = "/patient/intake/{token}")
+    public PatientIntakeDTO getIntakeStatus(@PathVariable("token") String token) {
+        return patientIntakeQueue.getStatus(token);
+    }
+
+    /**
+     * Import a list of patients.
+     *
+     * @param patientDTOs - the patients to add
+     * @return An ImportReportDto object with the rejected rows
+     */
+    @Operation(summary = "Import a list of patients")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patients imported, rejected rows are reported", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = ImportReportDTO.class)) })
+    })
+    @PostMapping(value = "/patient/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ImportReportDTO importPatients(@RequestBody List<PatientDTO> patientDTOs) {
+        logger.debug(PatientLogEvents.BULK, "Patient import requested rows={}", patientDTOs.size());
+        return patientService.importPatients(patientDTOs);
+    }
+
+    /**
+     * Import patients from a CSV document with a header row.
+     *
+     * @param csv - the CSV document
+     * @return An ImportReportDto object with the rejected rows
+     */
+    @Operation(summary = "Import patients from a CSV document")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patients imported, rejected rows are reported", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = ImportReportDTO.class)) }),
+            @ApiResponse(responseCode = "400", description = "Missing CSV header or unknown column", content = @Content)
+    })
+    @PostMapping(value = "/patient/import", consumes = "text/csv")
+    public ImportReportDTO importPatientsCsv(@RequestBody String csv) {
+        logger.debug(PatientLogEvents.BULK, "Patient CSV import requested");
+        return patientService.importPatientsCsv(csv);
+    }
+
     /**
      * Update an existing patient.
      *
@@ -116,24 +335,44 @@ public class PatientController {
             @ApiResponse(responseCode = "200", description = "Patient updated successfully", content = {@Content(mediaType = "application/json", schema = @Schema(implementation = PatientDTO.class))}),
             @ApiResponse(responseCode = "400", description = "Invalid patient data", content = @Content),
             @ApiResponse(responseCode = "404", description = "Patient not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Patient modified since the given version", content = @Content),
             @ApiResponse(responseCode = "500", description = "Failed to update patient", content = @Content)
     })
     @PutMapping(value = "/patient/update/{id}")
     public ResponseEntity<String> updatePatient(@PathVariable Integer id, @RequestBody @Valid PatientDTO patientDTO, BindingResult result) {
-        logger.info("Updating patient with ID: " + id);
+        logger.debug(PatientLogEvents.WRITE, "Patient update requested id={}", id);
 
         // Check if DTO is valid
         if (result.hasErrors()) return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid patient data");
 
         // Update the patient
         if (patientService.updatePatient(id, patientDTO)) {
-            logger.info("Updated patient with ID: " + id);
             return ResponseEntity.status(HttpStatus.OK).body("Patient updated successfully");
         } else {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update patient");
         }
     }
 
+    /**
+     * Partially update a patient: only the fields present in the JSON document are changed.
+     *
+     * @param id    - the patient id
+     * @param patch - the fields to change, and optionally the version they apply to
+     * @return the updated patient
+     */
+    @Operation(summary = "Partially update a patient")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Patient updated successfully", content = {@Content(mediaType = "application/json", schema = @Schema(implementation = PatientDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid patch or patient data", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Patient not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Patient modified since the given version", content = @Content)
+    })
+    @PatchMapping(value = "/patient/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public PatientDTO patchPatient(@PathVariable Integer id, @RequestBody JsonNode patch) {
+        logger.debug(PatientLogEvents.WRITE, "Patient patch requested id={}", id);
+        return patientService.patchPatient(id, patch);
+    }
+
     /**
      * Delete a patient by ID.
      *
@@ -148,14 +387,65 @@ public class PatientController {
     })
     @DeleteMapping(value = "/patient/{id}")
     public ResponseEntity<String> deletePatient(@PathVariable Integer id) {
-        logger.info("Deleting patient with ID: " + id);
+        logger.debug(PatientLogEvents.WRITE, "Patient deletion requested id={}", id);
 
         if (patientService.deletePatient(id)) {
-            logger.info("Deleted patient with ID: " + id);
             return ResponseEntity.status(HttpStatus.OK).body("Patient deleted successfully");
         } else {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to delete patient");
         }
     }
 
+    /**
+     * Get the number of patients by sex and by age band.
+     *
+     * @return A PatientStatsDto object with the counts
+     */
+    @Operation(summary = "Get the number of patients by sex and by age band")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics computed", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientStatsDTO.class)) })
+    })
+    @GetMapping(value = "/patient/stats")
+    public PatientStatsDTO getPatientStats() {
+        logger.debug(PatientLogEvents.READ, "Patient statistics requested");
+        return patientService.getPatientStats();
+    }
+
+    /**
+     * Get the patient changes after a sequence number, in order. When there are none yet, the request waits
+     * for the next change up to the given time.
+     *
+     * @param since - the sequence of the last change already consumed, 0 for the oldest retained change
+     * @param limit - the maximum number of changes
+     * @param wait  - how many seconds to wait for a change, 0 to return at once
+     * @return A PatientChangesDto object with the changes and the sequence to continue from
+     */
+    @Operation(summary = "Get the patient changes after a sequence number, waiting for the next ones")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Changes, empty if none happened during the wait", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = PatientChangesDTO.class)) }),
+            @ApiResponse(responseCode = "410", description = "Changes after this sequence are no longer retained", content = @Content)
+    })
+    @GetMapping(value = "/patient/changes")
+    public DeferredResult<PatientChangesDTO> getChanges(@RequestParam(value = "since", defaultValue = "0") long since,
+                                                        @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                        @RequestParam(value = "wait", defaultValue = "30") long wait) {
+        logger.debug(PatientLogEvents.READ, "Patient changes requested since={}", since);
+        Duration boundedWait = Duration.ofSeconds(Math.max(0, Math.min(wait, maxChangesWait.toSeconds())));
+        return patientChangeFeed.waitForChanges(since, limit, boundedWait);
+    }
+
+    /**
+     * Get the statistics of the patient cache.
+     *
+     * @return the hit, miss and eviction counters of each patient cache
+     */
+    @Operation(summary = "Get the patient cache statistics")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cache statistics", content = { @Content(mediaType = "application/json", schema = @Schema(implementation = CacheStatsDTO.class)) })
+    })
+    @GetMapping(value = "/patient/cache/stats")
+    public List<CacheStatsDTO> getCacheStats() {
+        return patientCache.getStats();
+    }
+
 }
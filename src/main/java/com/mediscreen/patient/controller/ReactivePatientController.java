@@ -0,0 +1,84 @@
+package com.mediscreen.patient.controller;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.logging.PatientLogEvents;
+import com.mediscreen.patient.service.IReactivePatientService;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking patient routes of the reactive profile, with the same contract as {@link PatientController}.
+ */
+@RestController
+@Profile("reactive")
+public class ReactivePatientController {
+
+    @Autowired
+    private IReactivePatientService patientService;
+
+    @Autowired
+    private Validator validator;
+
+    private static Logger logger = LoggerFactory.getLogger(ReactivePatientController.class);
+
+    @GetMapping(value = "/patient/{id}")
+    public Mono<PatientDTO> getPatientById(@PathVariable Integer id) {
+        logger.debug(PatientLogEvents.READ, "Patient requested id={}", id);
+        return patientService.getPatientById(id);
+    }
+
+    @GetMapping(value = "/patient")
+    public Mono<PatientDTO> getPatientByName(@RequestParam("family") String family,
+                                             @RequestParam("given") String given) {
+        logger.debug(PatientLogEvents.READ, "Patient requested by name");
+        return patientService.getPatientByName(family, given);
+    }
+
+    @GetMapping(value = "/patient/all")
+    public Flux<PatientDTO> getPatientList() {
+        logger.debug(PatientLogEvents.READ, "All patients requested");
+        return patientService.getAllPatients();
+    }
+
+    @PostMapping(value = "/patient/add", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public Mono<ResponseEntity<String>> addPatient(@ModelAttribute PatientDTO patientDTO) {
+        logger.debug(PatientLogEvents.WRITE, "Patient creation requested");
+
+        return patientService.addPatient(patientDTO).map(added -> added
+                ? ResponseEntity.status(HttpStatus.CREATED).body("Patient added successfully")
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to add patient"));
+    }
+
+    @PutMapping(value = "/patient/update/{id}")
+    public Mono<ResponseEntity<String>> updatePatient(@PathVariable Integer id, @RequestBody PatientDTO patientDTO) {
+        logger.debug(PatientLogEvents.WRITE, "Patient update requested id={}", id);
+
+        // Check if DTO is valid
+        if (!validator.validate(patientDTO).isEmpty()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid patient data"));
+        }
+
+        return patientService.updatePatient(id, patientDTO).map(updated -> updated
+                ? ResponseEntity.status(HttpStatus.OK).body("Patient updated successfully")
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update patient"));
+    }
+
+    @DeleteMapping(value = "/patient/{id}")
+    public Mono<ResponseEntity<String>> deletePatient(@PathVariable Integer id) {
+        logger.debug(PatientLogEvents.WRITE, "Patient deletion requested id={}", id);
+
+        return patientService.deletePatient(id).map(deleted -> deleted
+                ? ResponseEntity.status(HttpStatus.OK).body("Patient deleted successfully")
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to delete patient"));
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatsDTO {
+
+    private String name;
+
+    private long size;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    private double hitRate;
+
+}
@@ -0,0 +1,19 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportErrorDTO {
+
+    /**
+     * The 1-based number of the rejected row, header excluded.
+     */
+    private int row;
+
+    private String message;
+
+}
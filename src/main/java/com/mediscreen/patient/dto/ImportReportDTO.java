@@ -0,0 +1,26 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportReportDTO {
+
+    private int received;
+
+    private int imported;
+
+    private int failed;
+
+    private List<ImportErrorDTO> errors;
+
+    private long elapsedMillis;
+
+    private double rowsPerSecond;
+
+}
@@ -0,0 +1,24 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientBatchDTO {
+
+    /**
+     * Found patients, in the order of the requested ids.
+     */
+    private List<PatientDTO> patients;
+
+    /**
+     * Requested ids that match no patient.
+     */
+    private List<Integer> missingIds;
+
+}
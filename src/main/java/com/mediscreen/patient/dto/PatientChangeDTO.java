@@ -0,0 +1,30 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientChangeDTO {
+
+    private long seq;
+
+    /**
+     * CREATED, UPDATED or DELETED.
+     */
+    private String type;
+
+    private Integer patientId;
+
+    /**
+     * The patient after the change, null for a deletion.
+     */
+    private PatientDTO patient;
+
+    private Instant changedAt;
+
+}
@@ -0,0 +1,24 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientChangesDTO {
+
+    /**
+     * Changes in sequence order, empty if none happened before the wait timed out.
+     */
+    private List<PatientChangeDTO> changes;
+
+    /**
+     * Sequence to request the next changes from.
+     */
+    private long nextSince;
+
+}
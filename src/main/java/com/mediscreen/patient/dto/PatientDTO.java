@@ -27,6 +27,11 @@ public class PatientDTO {
 
     private String phone;
 
+    /**
+     * Version read with the patient. When sent back on update, the update only applies to that version.
+     */
+    private Integer version;
+
     @Override
     public String toString() {
         return "Patient{" +
@@ -37,6 +42,7 @@ public class PatientDTO {
                 ", dateOfBirth=" + dob + '\'' +
                 ", address=" + address  + '\'' +
                 ", phone=" + phone +
+                ", version=" + version +
                 "}";
     }
 
@@ -0,0 +1,33 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientFilterDTO {
+
+    private String sex;
+
+    /**
+     * Earliest date of birth, inclusive.
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dobFrom;
+
+    /**
+     * Latest date of birth, inclusive.
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dobTo;
+
+    private String addressPrefix;
+
+    private String phonePrefix;
+
+}
@@ -0,0 +1,38 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientIntakeDTO {
+
+    public static final String QUEUED = "QUEUED";
+
+    public static final String SAVED = "SAVED";
+
+    public static final String FAILED = "FAILED";
+
+    /**
+     * Tracking token returned when the patient was queued.
+     */
+    private String token;
+
+    /**
+     * QUEUED, SAVED or FAILED.
+     */
+    private String status;
+
+    /**
+     * Id of the saved patient, null until saved.
+     */
+    private Integer patientId;
+
+    /**
+     * Reason of the failure, null unless failed.
+     */
+    private String error;
+
+}
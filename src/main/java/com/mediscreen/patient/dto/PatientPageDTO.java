@@ -0,0 +1,21 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientPageDTO {
+
+    private List<PatientDTO> patients;
+
+    /**
+     * Opaque cursor to request the next page, null when this page is the last one.
+     */
+    private String nextCursor;
+
+}
@@ -0,0 +1,25 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientQueryPageDTO {
+
+    /**
+     * The requested fields of each patient, always with its id.
+     */
+    private List<Map<String, Object>> patients;
+
+    /**
+     * Opaque cursor to request the next page, null when this page is the last one.
+     */
+    private String nextCursor;
+
+}
@@ -0,0 +1,26 @@
+package com.mediscreen.patient.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientStatsDTO {
+
+    private long total;
+
+    private Map<String, Long> bySex;
+
+    /**
+     * Counts by age band in years, such as "30-39" or "80+", every band included.
+     */
+    private Map<String, Long> byAgeBand;
+
+    private Instant computedAt;
+
+}
@@ -0,0 +1,47 @@
+package com.mediscreen.patient.event;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by the patient service after a patient is created, updated or deleted.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PatientChangedEvent {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+
+    private final Integer patientId;
+
+    /**
+     * The patient state after the change, null for a deletion.
+     */
+    private final PatientDTO patient;
+
+    /**
+     * True when the change was already written to the outbox in its transaction, by the reactive service.
+     */
+    private final boolean recorded;
+
+    public static PatientChangedEvent created(PatientDTO patient) {
+        return new PatientChangedEvent(Type.CREATED, patient.getId(), patient, false);
+    }
+
+    public static PatientChangedEvent updated(PatientDTO patient) {
+        return new PatientChangedEvent(Type.UPDATED, patient.getId(), patient, false);
+    }
+
+    public static PatientChangedEvent deleted(Integer patientId) {
+        return new PatientChangedEvent(Type.DELETED, patientId, null, false);
+    }
+
+    public PatientChangedEvent asRecorded() {
+        return new PatientChangedEvent(type, patientId, patient, true);
+    }
+}
@@ -0,0 +1,11 @@
+package com.mediscreen.patient.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.GONE)
+public class ChangesExpiredException extends RuntimeException {
+    public ChangesExpiredException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,11 @@
+package com.mediscreen.patient.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class IntakeNotFoundException extends RuntimeException {
+    public IntakeNotFoundException(String s) {
+        super(s);
+    }
+}
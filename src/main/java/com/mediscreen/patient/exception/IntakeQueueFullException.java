@@ -0,0 +1,11 @@
+package com.mediscreen.patient.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class IntakeQueueFullException extends RuntimeException {
+    public IntakeQueueFullException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,11 @@
+package com.mediscreen.patient.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidBatchException extends RuntimeException {
+    public InvalidBatchException(String s) {
+        super(s);
+    }
+}
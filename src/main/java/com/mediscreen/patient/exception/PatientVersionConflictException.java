@@ -0,0 +1,11 @@
+package com.mediscreen.patient.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class PatientVersionConflictException extends RuntimeException {
+    public PatientVersionConflictException(String s) {
+        super(s);
+    }
+}
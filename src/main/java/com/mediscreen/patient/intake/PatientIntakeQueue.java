@@ -0,0 +1,238 @@
+package com.mediscreen.patient.intake;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mediscreen.patient.dto.ImportErrorDTO;
+import com.mediscreen.patient.dto.ImportReportDTO;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.dto.PatientIntakeDTO;
+import com.mediscreen.patient.exception.IntakeNotFoundException;
+import com.mediscreen.patient.exception.IntakeQueueFullException;
+import com.mediscreen.patient.exception.InvalidPatientException;
+import com.mediscreen.patient.logging.PatientLogEvents;
+import com.mediscreen.patient.service.IPatientService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind queue for new patients: requests are validated and queued, and a single writer saves them in
+ * grouped batch transactions through the import path.
+ * <p>
+ * The queue is bounded, a full queue rejects new patients instead of growing. On shutdown the queue stops
+ * accepting patients and the writer saves the queued ones before the database is closed. The statuses are kept
+ * for the status retention and up to the status max size, the least recently used being dropped first, so an
+ * old token may no longer be found.
+ */
+@Component
+public class PatientIntakeQueue implements SmartLifecycle, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientIntakeQueue.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final IPatientService patientService;
+
+    private final Validator validator;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final Duration drainTimeout;
+
+    private final BlockingQueue<IntakeRequest> queue;
+
+    private final Cache<String, PatientIntakeDTO> statuses;
+
+    private volatile boolean accepting = true;
+
+    private Thread writer;
+
+    public PatientIntakeQueue(IPatientService patientService,
+                              Validator validator,
+                              @Value("${patient.intake.async:false}") boolean enabled,
+                              @Value("${patient.intake.capacity:10000}") int capacity,
+                              @Value("${patient.intake.batch-size:200}") int batchSize,
+                              @Value("${patient.intake.drain-timeout:30s}") Duration drainTimeout,
+                              @Value("${patient.intake.status-retention:1h}") Duration statusRetention,
+                              @Value("${patient.intake.status-max-size:100000}") long statusMaxSize) {
+        this.patientService = patientService;
+        this.validator = validator;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.drainTimeout = drainTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(statusRetention)
+                .maximumSize(statusMaxSize)
+                .build();
+    }
+
+    /**
+     * Check if new patients are queued rather than saved in the request.
+     *
+     * @return true if the asynchronous intake is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Validate a new patient and queue it for saving.
+     *
+     * @param patientDTO the patient DTO to add
+     * @return the QUEUED status with the tracking token
+     * @throws InvalidPatientException if the patient is invalid
+     * @throws IntakeQueueFullException if the queue is full or shutting down
+     */
+    public PatientIntakeDTO enqueue(PatientDTO patientDTO) {
+        Set<ConstraintViolation<PatientDTO>> violations = validator.validate(patientDTO);
+        if (!violations.isEmpty()) {
+            throw new InvalidPatientException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+
+        String token = UUID.randomUUID().toString();
+        PatientIntakeDTO status = new PatientIntakeDTO(token, PatientIntakeDTO.QUEUED, null, null);
+        statuses.put(token, status);
+
+        if (!accepting || !queue.offer(new IntakeRequest(token, patientDTO))) {
+            statuses.invalidate(token);
+            throw new IntakeQueueFullException("The patient intake queue is full, retry later");
+        }
+
+        return status;
+    }
+
+    /**
+     * Get the status of a queued patient.
+     *
+     * @param token the tracking token
+     * @return the status of the patient
+     * @throws IntakeNotFoundException if the token is unknown or expired
+     */
+    public PatientIntakeDTO getStatus(String token) {
+        PatientIntakeDTO status = statuses.getIfPresent(token);
+        if (status == null) throw new IntakeNotFoundException("Patient intake not found with token: " + token);
+        return status;
+    }
+
+    /**
+     * Publish the number of queued patients as the patient.intake.queue.size gauge.
+     *
+     * @param registry the meter registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("patient.intake.queue.size", queue, BlockingQueue::size).register(registry);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || writer != null) return;
+
+        writer = new Thread(this::writeQueuedPatients, "patient-intake-writer");
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+        if (writer == null) return;
+
+        try {
+            writer.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (writer.isAlive()) {
+            logger.warn("Patient intake not drained timeout={} lost={}", drainTimeout, queue.size());
+            writer.interrupt();
+        }
+        writer = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return writer != null;
+    }
+
+    /**
+     * Stop after the web server, so that the patients accepted by the last requests are drained too.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void writeQueuedPatients() {
+        List<IntakeRequest> batch = new ArrayList<>(batchSize);
+
+        while (accepting || !queue.isEmpty()) {
+            try {
+                IntakeRequest first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<IntakeRequest> batch) {
+        List<PatientDTO> patientDTOs = batch.stream().map(IntakeRequest::patientDTO).toList();
+
+        try {
+            ImportReportDTO report = patientService.importPatients(patientDTOs);
+            Map<Integer, String> errorsByRow = new HashMap<>();
+            for (ImportErrorDTO error : report.getErrors()) errorsByRow.put(error.getRow(), error.getMessage());
+
+            for (int i = 0; i < batch.size(); i++) {
+                String error = errorsByRow.get(i + 1);
+                String token = batch.get(i).token();
+                statuses.put(token, error == null
+                        ? new PatientIntakeDTO(token, PatientIntakeDTO.SAVED, patientDTOs.get(i).getId(), null)
+                        : new PatientIntakeDTO(token, PatientIntakeDTO.FAILED, null, error));
+            }
+        } catch (RuntimeException e) {
+            // The cause can quote the rejected values, it is only logged in debug
+            logger.error(PatientLogEvents.WRITE, "Queued patients not saved count={} cause={}", batch.size(), e.getClass().getName());
+            logger.debug(PatientLogEvents.WRITE, "Queued patients failure", e);
+            for (IntakeRequest request : batch) {
+                statuses.put(request.token(), new PatientIntakeDTO(request.token(), PatientIntakeDTO.FAILED, null, "Failed to add patient"));
+            }
+        }
+    }
+
+    private record IntakeRequest(String token, PatientDTO patientDTO) {
+    }
+}
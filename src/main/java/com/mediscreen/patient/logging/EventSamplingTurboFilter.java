@@ -0,0 +1,74 @@
+package com.mediscreen.patient.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one log event in N for each configured marker, before the event or its message is built.
+ * <p>
+ * The rates are set as "marker=N" pairs separated by commas, such as "patient.read=100,patient.write=1".
+ * A rate of 0 drops every event of the marker. Warnings and errors are always kept, as are events without
+ * a configured marker.
+ */
+public class EventSamplingTurboFilter extends TurboFilter {
+
+    private String rates = "";
+
+    private Map<String, Sampler> samplers = Map.of();
+
+    public void setRates(String rates) {
+        this.rates = rates == null ? "" : rates;
+    }
+
+    @Override
+    public void start() {
+        Map<String, Sampler> parsed = new HashMap<>();
+
+        for (String pair : rates.split(",")) {
+            if (pair.isBlank()) continue;
+
+            int separator = pair.lastIndexOf('=');
+            if (separator < 0) {
+                addError("Invalid sampling rate \"" + pair + "\", expected marker=N");
+                continue;
+            }
+
+            try {
+                parsed.put(pair.substring(0, separator).trim(), new Sampler(Long.parseLong(pair.substring(separator + 1).trim())));
+            } catch (NumberFormatException e) {
+                addError("Invalid sampling rate \"" + pair + "\", expected marker=N");
+            }
+        }
+
+        samplers = Map.copyOf(parsed);
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (marker == null || level == null || level.isGreaterOrEqual(Level.WARN)) return FilterReply.NEUTRAL;
+
+        Sampler sampler = samplers.get(marker.getName());
+        if (sampler == null) return FilterReply.NEUTRAL;
+
+        return sampler.keep() ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private record Sampler(long rate, AtomicLong count) {
+
+        Sampler(long rate) {
+            this(rate, new AtomicLong());
+        }
+
+        boolean keep() {
+            return rate > 0 && count.getAndIncrement() % rate == 0;
+        }
+    }
+}
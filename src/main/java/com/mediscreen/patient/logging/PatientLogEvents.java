@@ -0,0 +1,31 @@
+package com.mediscreen.patient.logging;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+/**
+ * Markers of the patient log events, sampled or turned off one by one with patient.logging.sample-rates.
+ * <p>
+ * Messages carry ids and counts only, never names, dates of birth or contact details. Values are passed as
+ * parameters, so a message is only built when the event is actually written.
+ */
+public final class PatientLogEvents {
+
+    /**
+     * A patient or a list of patients is read.
+     */
+    public static final Marker READ = MarkerFactory.getMarker("patient.read");
+
+    /**
+     * A patient is created, updated, patched or deleted.
+     */
+    public static final Marker WRITE = MarkerFactory.getMarker("patient.write");
+
+    /**
+     * Patients are imported or exported in bulk.
+     */
+    public static final Marker BULK = MarkerFactory.getMarker("patient.bulk");
+
+    private PatientLogEvents() {
+    }
+}
@@ -0,0 +1,64 @@
+package com.mediscreen.patient.metrics;
+
+import com.mediscreen.patient.exception.InvalidBatchException;
+import com.mediscreen.patient.exception.InvalidCursorException;
+import com.mediscreen.patient.exception.InvalidImportException;
+import com.mediscreen.patient.exception.InvalidPatientException;
+import com.mediscreen.patient.exception.InvalidQueryException;
+import com.mediscreen.patient.exception.PatientNotFoundException;
+import com.mediscreen.patient.exception.PatientVersionConflictException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every {@link com.mediscreen.patient.service.IPatientService} call as "patient.service", tagged with the
+ * method name and its outcome, so that not found and failed calls are counted and timed apart from the successful ones.
+ * <p>
+ * Outcomes: success, not_found (PatientNotFoundException), invalid (bad cursor, import file, patch or batch),
+ * conflict (stale version), failure (the method returned false) and error (any other exception).
+ * Percentiles are configured with management.metrics.distribution.* in application.properties.
+ */
+@Aspect
+@Component
+public class PatientServiceMetrics {
+
+    public static final String TIMER_NAME = "patient.service";
+
+    private final MeterRegistry meterRegistry;
+
+    public PatientServiceMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(* com.mediscreen.patient.service.IPatientService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+
+        try {
+            Object result = joinPoint.proceed();
+            outcome = Boolean.FALSE.equals(result) ? "failure" : "success";
+            return result;
+        } catch (PatientNotFoundException e) {
+            outcome = "not_found";
+            throw e;
+        } catch (InvalidCursorException | InvalidImportException | InvalidPatientException | InvalidBatchException
+                 | InvalidQueryException e) {
+            outcome = "invalid";
+            throw e;
+        } catch (PatientVersionConflictException e) {
+            outcome = "conflict";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(TIMER_NAME)
+                    .description("Patient service calls")
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
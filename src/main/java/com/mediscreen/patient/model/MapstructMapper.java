@@ -2,6 +2,8 @@ package com.mediscreen.patient.model;
 
 import com.mediscreen.patient.dto.PatientDTO;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
 import java.util.List;
 
 @Mapper
@@ -9,5 +11,15 @@ public interface MapstructMapper {
 
     List<PatientDTO> patientListToDTO(List<Patient> patients);
     PatientDTO patientToDTO(Patient patient);
+
+    @Mapping(target = "nameKey", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
     Patient patientDTOToPatient(PatientDTO patientDTO);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "nameKey", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
+    void updatePatientFromDTO(PatientDTO patientDTO, @MappingTarget Patient patient);
 }
@@ -0,0 +1,43 @@
+package com.mediscreen.patient.model;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Case and accent insensitive normalisation of patient names, used for the indexed name lookup key.
+ */
+public final class NameNormalizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    private NameNormalizer() {
+    }
+
+    /**
+     * Normalise a name: accents removed, lower case, trimmed and with single spaces.
+     *
+     * @param name the name to normalise
+     * @return the normalised name, empty if the name is null
+     */
+    public static String normalize(String name) {
+        if (name == null) return "";
+
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        String stripped = DIACRITICS.matcher(decomposed).replaceAll("");
+        return WHITESPACES.matcher(stripped.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Build the lookup key of a fullname.
+     *
+     * @param family the patient family name
+     * @param given  the patient given name
+     * @return the normalised family and given names joined by a '|'
+     */
+    public static String nameKey(String family, String given) {
+        return normalize(family) + '|' + normalize(given);
+    }
+}
@@ -4,13 +4,27 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import com.mediscreen.patient.config.SecondLevelCacheConfig;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
+import java.time.Instant;
 import java.time.LocalDate;
 
 @Data
 @Entity
+@Table(name = "patient", indexes = {
+        @Index(name = "idx_patient_family_given", columnList = "family_name, given_name"),
+        @Index(name = "idx_patient_name_key", columnList = "name_key"),
+        @Index(name = "idx_patient_sex_dob", columnList = "sex, date_of_birth")
+})
 @AllArgsConstructor
 @NoArgsConstructor
+// Updates of a loaded patient only write the columns that changed
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.PATIENT_REGION)
 public class Patient {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -35,4 +49,30 @@ public class Patient {
     @Column(name = "phone")
     private String phone;
 
+    /**
+     * Case and accent insensitive fullname, kept up to date on save for the indexed name lookup.
+     */
+    @Column(name = "name_key", length = 101)
+    private String nameKey;
+
+    /**
+     * Incremented on every update, so that an update made from a stale copy of the patient is rejected.
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+    /**
+     * Time of the last insert or update.
+     */
+    @Column(name = "last_modified", nullable = false)
+    private Instant lastModified;
+
+    @PrePersist
+    @PreUpdate
+    void updateDerivedColumns() {
+        nameKey = NameNormalizer.nameKey(family, given);
+        lastModified = Instant.now();
+    }
+
 }
\ No newline at end of file
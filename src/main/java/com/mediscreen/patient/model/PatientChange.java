@@ -0,0 +1,48 @@
+package com.mediscreen.patient.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Outbox row recording one patient mutation, written in the transaction of the mutation.
+ * The feed sequence, given once the row is committed, orders the changes for the consumers of the change feed.
+ */
+@Data
+@Entity
+@Table(name = "patient_change", indexes = {
+        @Index(name = "idx_patient_change_changed_at", columnList = "changed_at"),
+        @Index(name = "idx_patient_change_feed_seq", columnList = "feed_seq", unique = true)
+})
+@AllArgsConstructor
+@NoArgsConstructor
+public class PatientChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "change_type", length = 10, nullable = false)
+    private String type;
+
+    @Column(name = "patient_id", nullable = false)
+    private Integer patientId;
+
+    /**
+     * JSON of the patient after the change, null for a deletion.
+     */
+    @Column(name = "patient", length = 1000)
+    private String patient;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    /**
+     * Position in the change feed, null until the row is numbered by the relay.
+     */
+    @Column(name = "feed_seq")
+    private Long feedSeq;
+}
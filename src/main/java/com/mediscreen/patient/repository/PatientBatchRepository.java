@@ -0,0 +1,98 @@
+package com.mediscreen.patient.repository;
+
+import com.mediscreen.patient.model.NameNormalizer;
+import com.mediscreen.patient.model.Patient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC batch writes of patients, which Hibernate cannot batch because of the identity id generation.
+ * On MySQL, rewriteBatchedStatements=true on the datasource url turns each batch into multi-row inserts.
+ */
+@Repository
+public class PatientBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key, version, last_modified) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)";
+
+    private static final String SELECT_WITHOUT_NAME_KEY_SQL = "SELECT id, family_name, given_name FROM patient "
+            + "WHERE name_key IS NULL AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPDATE_NAME_KEY_SQL = "UPDATE patient SET name_key = ? WHERE id = ? AND name_key IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert patients in a single JDBC batch.
+     *
+     * @param patients the patients to insert, their id is ignored
+     * @return the generated ids, in the order of the patients
+     */
+    public List<Integer> insertAll(List<Patient> patients) {
+        Timestamp now = Timestamp.from(Instant.now());
+
+        return jdbcTemplate.execute((ConnectionCallback<List<Integer>>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Patient patient : patients) {
+                    statement.setString(1, patient.getFamily());
+                    statement.setString(2, patient.getGiven());
+                    statement.setString(3, patient.getSex());
+                    statement.setObject(4, patient.getDob());
+                    statement.setString(5, patient.getAddress());
+                    statement.setString(6, patient.getPhone());
+                    statement.setString(7, NameNormalizer.nameKey(patient.getFamily(), patient.getGiven()));
+                    statement.setTimestamp(8, now);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                List<Integer> ids = new ArrayList<>(patients.size());
+                try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                    while (generatedKeys.next()) ids.add(generatedKeys.getInt(1));
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Fill the name key of the patients written without one, by batches in id order.
+     *
+     * @param batchSize the number of patients read and updated at once
+     * @return the number of patients updated
+     */
+    public int backfillNameKeys(int batchSize) {
+        int updated = 0;
+        int lastId = 0;
+
+        while (true) {
+            List<Patient> patients = jdbcTemplate.query(SELECT_WITHOUT_NAME_KEY_SQL, (resultSet, row) -> {
+                Patient patient = new Patient();
+                patient.setId(resultSet.getInt("id"));
+                patient.setFamily(resultSet.getString("family_name"));
+                patient.setGiven(resultSet.getString("given_name"));
+                return patient;
+            }, lastId, batchSize);
+            if (patients.isEmpty()) return updated;
+
+            List<Object[]> arguments = patients.stream()
+                    .map(patient -> new Object[]{NameNormalizer.nameKey(patient.getFamily(), patient.getGiven()), patient.getId()})
+                    .toList();
+            for (int count : jdbcTemplate.batchUpdate(UPDATE_NAME_KEY_SQL, arguments)) {
+                updated += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+            lastId = patients.get(patients.size() - 1).getId();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mediscreen.patient.repository;
+
+import com.mediscreen.patient.model.PatientChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface PatientChangeRepository extends JpaRepository<PatientChange, Long> {
+
+    /**
+     * Numbered changes after the given feed sequence. The pageable must always target the first page.
+     */
+    List<PatientChange> findByFeedSeqGreaterThanOrderByFeedSeqAsc(Long feedSeq, Pageable pageable);
+
+    /**
+     * Latest feed sequence, null if no change is numbered.
+     */
+    @Query("select max(c.feedSeq) from PatientChange c")
+    Long findLatestFeedSeq();
+
+    /**
+     * Oldest retained feed sequence, null if no change is numbered.
+     */
+    @Query("select min(c.feedSeq) from PatientChange c")
+    Long findOldestFeedSeq();
+
+    @Transactional
+    @Modifying
+    @Query("delete from PatientChange c where c.changedAt < :before")
+    int deleteChangedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,15 @@
+package com.mediscreen.patient.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Number of patients of one sex born on one day.
+ */
+public interface PatientDobCount {
+
+    String getSex();
+
+    LocalDate getDob();
+
+    long getCount();
+}
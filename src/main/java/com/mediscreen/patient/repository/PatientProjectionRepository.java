@@ -0,0 +1,24 @@
+package com.mediscreen.patient.repository;
+
+import com.mediscreen.patient.model.Patient;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads of selected patient fields only, without loading Patient entities.
+ */
+public interface PatientProjectionRepository {
+
+    /**
+     * Keyset page of the patients matching a filter, ordered by ID, with only the selected fields.
+     *
+     * @param specification the filter, null for all patients
+     * @param fields        the Patient attributes to select, in order
+     * @param afterId       the id to start after, 0 for the first page
+     * @param limit         the maximum number of patients
+     * @return the selected fields of each patient by attribute name
+     */
+    List<Map<String, Object>> findFieldsAfterId(Specification<Patient> specification, List<String> fields, int afterId, int limit);
+}
@@ -0,0 +1,54 @@
+package com.mediscreen.patient.repository;
+
+import com.mediscreen.patient.model.Patient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Criteria tuple queries: the select list only holds the requested columns, so nothing is hydrated
+ * or tracked by the persistence context.
+ */
+public class PatientProjectionRepositoryImpl implements PatientProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Map<String, Object>> findFieldsAfterId(Specification<Patient> specification, List<String> fields, int afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Patient> root = query.from(Patient.class);
+
+        List<Selection<?>> selections = new ArrayList<>(fields.size());
+        for (String field : fields) selections.add(root.get(field).alias(field));
+        query.multiselect(selections);
+
+        Predicate afterIdPredicate = cb.greaterThan(root.get("id"), afterId);
+        Predicate filter = specification == null ? null : specification.toPredicate(root, query, cb);
+        query.where(filter == null ? afterIdPredicate : cb.and(afterIdPredicate, filter));
+        query.orderBy(cb.asc(root.get("id")));
+
+        List<Tuple> tuples = entityManager.createQuery(query).setMaxResults(limit).getResultList();
+        List<Map<String, Object>> rows = new ArrayList<>(tuples.size());
+
+        for (Tuple tuple : tuples) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String field : fields) row.put(field, tuple.get(field));
+            rows.add(row);
+        }
+
+        return rows;
+    }
+}
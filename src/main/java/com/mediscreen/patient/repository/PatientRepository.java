@@ -1,13 +1,110 @@
 package com.mediscreen.patient.repository;
 
+import com.mediscreen.patient.config.SecondLevelCacheConfig;
 import com.mediscreen.patient.model.Patient;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Integer> {
+public interface PatientRepository extends JpaRepository<Patient, Integer>, JpaSpecificationExecutor<Patient>,
+        PatientProjectionRepository {
 
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = SecondLevelCacheConfig.PATIENT_QUERY_REGION)
+    })
+    @Transactional(readOnly = true)
     Optional<Patient> findByFamilyAndGiven(String family, String given);
+
+    /**
+     * Find a patient by its case and accent insensitive fullname, see {@link com.mediscreen.patient.model.NameNormalizer}.
+     * The result is kept in the query cache. Read-only, so that it can run on a replica.
+     */
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = SecondLevelCacheConfig.PATIENT_QUERY_REGION)
+    })
+    @Transactional(readOnly = true)
+    Optional<Patient> findFirstByNameKeyOrderByIdAsc(String nameKey);
+
+    /**
+     * Keyset page of patients: seeks past the given id on the primary key, so every page costs the same.
+     * The pageable must always target the first page, only its size is used as the limit.
+     */
+    List<Patient> findByIdGreaterThanOrderByIdAsc(Integer id, Pageable pageable);
+
+    /**
+     * Forward-only cursor over every patient ordered by id.
+     * On MySQL the fetch size is only honoured with useCursorFetch=true on the datasource url.
+     * Must be consumed and closed inside a transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAllByOrderByIdAsc();
+
+    /**
+     * Update every column of a patient in one statement and increment its version, without loading it first.
+     * The name key and last modified time are written as given, they must already be set.
+     *
+     * @param patient         the new state of the patient, with its id
+     * @param expectedVersion the version the update applies to, null to update whatever the current version
+     * @return the number of updated rows, 0 if the patient doesn't exist or is no longer at the expected version
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Patient p set p.family = :#{#patient.family}, p.given = :#{#patient.given}, p.sex = :#{#patient.sex}, "
+            + "p.dob = :#{#patient.dob}, p.address = :#{#patient.address}, p.phone = :#{#patient.phone}, "
+            + "p.nameKey = :#{#patient.nameKey}, p.lastModified = :#{#patient.lastModified}, p.version = p.version + 1 "
+            + "where p.id = :#{#patient.id} and (:expectedVersion is null or p.version = :expectedVersion)")
+    int updateById(@Param("patient") Patient patient, @Param("expectedVersion") Integer expectedVersion);
+
+    /**
+     * Read the version of a patient alone, to complete the state written by {@link #updateById} in its transaction.
+     *
+     * @return the current version, null if the patient doesn't exist
+     */
+    @Query("select p.version from Patient p where p.id = :id")
+    Integer findVersionById(@Param("id") Integer id);
+
+    /**
+     * Version of the patient table, incremented by every transaction that adds, updates or deletes patients.
+     * It is one row of the patient_table_version table, read by its primary key.
+     */
+    @Query(value = "SELECT version FROM patient_table_version WHERE id = 1", nativeQuery = true)
+    Long findTableVersion();
+
+    /**
+     * Count the patients by sex and date of birth, read from the (sex, date_of_birth) index. The result has at most
+     * one row per sex and day of birth, but the whole index is scanned, so the query takes longer as patients are added.
+     *
+     * @return the number of patients of each sex born on each day
+     */
+    @Transactional(readOnly = true)
+    @Query("select p.sex as sex, p.dob as dob, count(p) as count from Patient p group by p.sex, p.dob")
+    List<PatientDobCount> countBySexAndDob();
+
+    /**
+     * Delete a patient in one statement, without loading it first.
+     *
+     * @return the number of deleted rows, 0 if the patient doesn't exist
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Patient p where p.id = :id")
+    int deletePatientById(@Param("id") Integer id);
 }
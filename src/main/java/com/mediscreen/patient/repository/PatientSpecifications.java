@@ -0,0 +1,64 @@
+package com.mediscreen.patient.repository;
+
+import com.mediscreen.patient.dto.PatientFilterDTO;
+import com.mediscreen.patient.model.Patient;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+
+/**
+ * Composable patient filters. Each filter is null when its value is null, and null filters are ignored
+ * when combined with {@link Specification#and}.
+ */
+public final class PatientSpecifications {
+
+    private static final char LIKE_ESCAPE = '!';
+
+    private PatientSpecifications() {
+    }
+
+    /**
+     * Combine all the filters that are set.
+     *
+     * @param filter the filter values, each one optional
+     * @return the combined filter
+     */
+    public static Specification<Patient> matching(PatientFilterDTO filter) {
+        return Specification.where(hasSex(filter.getSex()))
+                .and(bornFrom(filter.getDobFrom()))
+                .and(bornUntil(filter.getDobTo()))
+                .and(addressStartsWith(filter.getAddressPrefix()))
+                .and(phoneStartsWith(filter.getPhonePrefix()));
+    }
+
+    public static Specification<Patient> hasSex(String sex) {
+        if (sex == null || sex.isBlank()) return null;
+        return (root, query, cb) -> cb.equal(root.get("sex"), sex);
+    }
+
+    public static Specification<Patient> bornFrom(LocalDate dob) {
+        if (dob == null) return null;
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("dob"), dob);
+    }
+
+    public static Specification<Patient> bornUntil(LocalDate dob) {
+        if (dob == null) return null;
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("dob"), dob);
+    }
+
+    public static Specification<Patient> addressStartsWith(String prefix) {
+        return startsWith("address", prefix);
+    }
+
+    public static Specification<Patient> phoneStartsWith(String prefix) {
+        return startsWith("phone", prefix);
+    }
+
+    private static Specification<Patient> startsWith(String attribute, String prefix) {
+        if (prefix == null || prefix.isEmpty()) return null;
+
+        // Not a backslash, which MySQL would also read as an escape in the SQL literal
+        String pattern = prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+        return (root, query, cb) -> cb.like(root.get(attribute), pattern, LIKE_ESCAPE);
+    }
+}
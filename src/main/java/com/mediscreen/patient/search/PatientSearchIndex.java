@@ -0,0 +1,194 @@
+package com.mediscreen.patient.search;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import com.mediscreen.patient.model.MapstructMapper;
+import com.mediscreen.patient.model.NameNormalizer;
+import com.mediscreen.patient.model.Patient;
+import com.mediscreen.patient.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.mapstruct.factory.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory prefix index over the family and given names of the patients.
+ * <p>
+ * Every word of a normalised name is a key of a sorted map, so the patients matching a prefix are a range of it.
+ * The index is built at startup and kept up to date by the patient change events.
+ */
+@Component
+public class PatientSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientSearchIndex.class);
+
+    private static final int EXACT_WORD_SCORE = 2;
+
+    private static final int PREFIX_SCORE = 1;
+
+    private record Entry(PatientDTO patient, String sortKey, List<String> words) {
+    }
+
+    private record Match(Entry entry, int score) {
+    }
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ConcurrentNavigableMap<String, Set<Integer>> words = new ConcurrentSkipListMap<>();
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    MapstructMapper mapper = Mappers.getMapper(MapstructMapper.class);
+
+    /**
+     * Rebuild the index from all the patients in db.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        entries.clear();
+        words.clear();
+
+        try (Stream<Patient> patients = patientRepository.streamAllByOrderByIdAsc()) {
+            Iterator<Patient> iterator = patients.iterator();
+
+            while (iterator.hasNext()) {
+                Patient patient = iterator.next();
+                put(mapper.patientToDTO(patient));
+                entityManager.detach(patient);
+            }
+        }
+
+        logger.info("Patient search index built patients={} millis={}", entries.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Add or replace a patient in the index.
+     *
+     * @param patientDTO the patient DTO to index
+     */
+    public synchronized void put(PatientDTO patientDTO) {
+        if (patientDTO == null || patientDTO.getId() == null) return;
+
+        remove(patientDTO.getId());
+
+        String family = NameNormalizer.normalize(patientDTO.getFamily());
+        String given = NameNormalizer.normalize(patientDTO.getGiven());
+        List<String> patientWords = new ArrayList<>(split(family));
+        patientWords.addAll(split(given));
+
+        entries.put(patientDTO.getId(), new Entry(patientDTO, family + '|' + given, patientWords));
+        for (String word : patientWords) {
+            words.computeIfAbsent(word, key -> ConcurrentHashMap.newKeySet()).add(patientDTO.getId());
+        }
+    }
+
+    /**
+     * Remove a patient from the index.
+     *
+     * @param id the patient id
+     */
+    public synchronized void remove(Integer id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) return;
+
+        for (String word : entry.words()) {
+            Set<Integer> ids = words.get(word);
+            if (ids == null) continue;
+
+            ids.remove(id);
+            if (ids.isEmpty()) words.remove(word);
+        }
+    }
+
+    /**
+     * Search the patients whose names have a word starting with each word of the query.
+     * Exact word matches rank before prefix matches, then patients are sorted by name.
+     *
+     * @param query the searched names or name prefixes
+     * @param limit the maximum number of patients returned
+     * @return the matching patient DTOs, best matches first
+     */
+    public List<PatientDTO> search(String query, int limit) {
+        List<String> terms = split(NameNormalizer.normalize(query));
+        if (terms.isEmpty() || limit < 1) return List.of();
+
+        Map<Integer, Integer> scores = null;
+
+        for (String term : terms) {
+            Map<Integer, Integer> termScores = new HashMap<>();
+            for (Map.Entry<String, Set<Integer>> word : words.subMap(term, true, term + Character.MAX_VALUE, true).entrySet()) {
+                int score = word.getKey().equals(term) ? EXACT_WORD_SCORE : PREFIX_SCORE;
+                for (Integer id : word.getValue()) termScores.merge(id, score, Math::max);
+            }
+
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+
+            if (scores.isEmpty()) return List.of();
+        }
+
+        return scores.entrySet().stream()
+                .map(score -> {
+                    Entry entry = entries.get(score.getKey());
+                    return entry == null ? null : new Match(entry, score.getValue());
+                })
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingInt(Match::score).reversed()
+                        .thenComparing(match -> match.entry().sortKey())
+                        .thenComparing(match -> match.entry().patient().getId()))
+                .limit(limit)
+                .map(match -> match.entry().patient())
+                .toList();
+    }
+
+    /**
+     * Get the number of indexed patients.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event) {
+        if (event.getType() == PatientChangedEvent.Type.DELETED) {
+            remove(event.getPatientId());
+        } else {
+            put(event.getPatient());
+        }
+    }
+
+    private static List<String> split(String normalizedName) {
+        if (normalizedName.isEmpty()) return List.of();
+        return Stream.of(normalizedName.split("[\\s\\-'’]+")).filter(word -> !word.isEmpty()).toList();
+    }
+}
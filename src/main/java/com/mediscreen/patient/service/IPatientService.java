@@ -1,10 +1,25 @@
 package com.mediscreen.patient.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mediscreen.patient.dto.ImportReportDTO;
+import com.mediscreen.patient.dto.PatientBatchDTO;
 import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.dto.PatientFilterDTO;
+import com.mediscreen.patient.dto.PatientPageDTO;
+import com.mediscreen.patient.dto.PatientQueryPageDTO;
+import com.mediscreen.patient.dto.PatientStatsDTO;
+import com.mediscreen.patient.exception.InvalidBatchException;
+import com.mediscreen.patient.exception.InvalidCursorException;
+import com.mediscreen.patient.exception.InvalidImportException;
+import com.mediscreen.patient.exception.InvalidPatientException;
+import com.mediscreen.patient.exception.InvalidQueryException;
 import com.mediscreen.patient.exception.PatientNotFoundException;
+import com.mediscreen.patient.exception.PatientVersionConflictException;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Service interface for managing patients.
@@ -30,6 +45,15 @@ public interface IPatientService {
      */
     PatientDTO getPatientByName(String family, String given) throws PatientNotFoundException;
 
+    /**
+     * Get the patients with the given IDs in one call, from the cache when present, otherwise with IN queries.
+     *
+     * @param ids the IDs of the patients, duplicates and nulls are ignored
+     * @return the found patients in the order of the IDs, and the IDs of the missing ones
+     * @throws InvalidBatchException if more IDs are requested than allowed
+     */
+    PatientBatchDTO getPatientsByIds(List<Integer> ids) throws InvalidBatchException;
+
     /**
      * Get all patients.
      *
@@ -38,6 +62,74 @@ public interface IPatientService {
      */
     List<PatientDTO> getAllPatients() throws PatientNotFoundException;
 
+    /**
+     * Get a token of the current state of the patient list, which changes whenever a patient is added,
+     * updated or deleted. It is computed without reading the patients.
+     *
+     * @return the state token of the patient list
+     */
+    String getAllPatientsVersion();
+
+    /**
+     * Get all patients unless the caller already has them. The state token and the patients are read in one
+     * read-only transaction, so both come from the same database and the same snapshot.
+     *
+     * @param notModified tells, from the state token of the patient list, whether the caller already has it
+     * @return a list of patient DTOs, null if the caller already has them
+     * @throws PatientNotFoundException if no patients are found
+     */
+    List<PatientDTO> getAllPatientsIfModified(Predicate<String> notModified) throws PatientNotFoundException;
+
+    /**
+     * Get the number of patients by sex and by age band. The counts are grouped in the database and kept for
+     * a short time, so consumers don't need to download the patients. Each recompute still scans an index of all
+     * the patients: the cost is spread over the requests served from the kept counts, not constant.
+     *
+     * @return the patient statistics
+     */
+    PatientStatsDTO getPatientStats();
+
+    /**
+     * Get a page of patients ordered by ID, using keyset paging.
+     *
+     * @param cursor the cursor returned with the previous page, null for the first page
+     * @param size   the requested page size, capped to the configured maximum
+     * @return the page of patient DTOs and the cursor of the next page
+     * @throws InvalidCursorException if the cursor is malformed
+     */
+    PatientPageDTO getPatientPage(String cursor, int size) throws InvalidCursorException;
+
+    /**
+     * Get a page of the patients matching a filter, ordered by ID, with only the requested fields.
+     *
+     * @param filter the filter values, each one optional
+     * @param fields the fields to return, null or empty for all of them; the id is always returned
+     * @param cursor the cursor returned with the previous page, null for the first page
+     * @param size   the number of patients per page
+     * @return the page of patient fields with the cursor of the next page
+     * @throws InvalidQueryException if a field is unknown
+     * @throws InvalidCursorException if the cursor is malformed
+     */
+    PatientQueryPageDTO queryPatients(PatientFilterDTO filter, List<String> fields, String cursor, int size)
+            throws InvalidQueryException, InvalidCursorException;
+
+    /**
+     * Search patients by names or name prefixes, from the in-memory search index.
+     *
+     * @param query the searched names or name prefixes
+     * @param limit the maximum number of patients, capped to the configured maximum
+     * @return the matching patient DTOs, best matches first
+     */
+    List<PatientDTO> searchPatients(String query, int limit);
+
+    /**
+     * Export all patients one at a time, ordered by ID, without loading the whole table in memory.
+     *
+     * @param consumer the consumer receiving each patient DTO
+     * @return the number of exported patients
+     */
+    long exportPatients(Consumer<PatientDTO> consumer);
+
     /**
      * Add a new patient.
      *
@@ -47,14 +139,45 @@ public interface IPatientService {
     boolean addPatient(PatientDTO patientDTO);
 
     /**
-     * Update an existing patient.
+     * Import patients in JDBC batches. Invalid or failing rows are reported without aborting the import.
+     *
+     * @param patientDTOs the patient DTOs to add
+     * @return the import report with the rejected rows and the throughput
+     */
+    ImportReportDTO importPatients(List<PatientDTO> patientDTOs);
+
+    /**
+     * Import patients from a CSV document with a header row. Rows that cannot be read are reported like invalid ones.
+     *
+     * @param csv the CSV document
+     * @return the import report with the rejected rows and the throughput
+     * @throws InvalidImportException if the header is missing or names an unknown column
+     */
+    ImportReportDTO importPatientsCsv(String csv) throws InvalidImportException;
+
+    /**
+     * Update an existing patient. If the DTO has a version, the update only applies to that version of the patient.
      *
      * @param id         the ID of the patient to update
      * @param patientDTO the updated patient DTO
      * @return true if the patient is updated successfully, false otherwise
-     * @throws PatientNotFoundException if the patient is not found
+     * @throws PatientNotFoundException        if the patient is not found
+     * @throws PatientVersionConflictException if the patient was updated since the version of the DTO
+     */
+    boolean updatePatient(Integer id, PatientDTO patientDTO) throws PatientNotFoundException, PatientVersionConflictException;
+
+    /**
+     * Apply a partial update to a patient: only the fields present in the document are changed,
+     * and only the changed columns are written.
+     *
+     * @param id    the ID of the patient to update
+     * @param patch a JSON object with the fields to change, and optionally the version it applies to
+     * @return the updated patient DTO
+     * @throws PatientNotFoundException        if the patient is not found
+     * @throws PatientVersionConflictException if the patient was updated since the version of the document
+     * @throws InvalidPatientException         if the document is malformed or the patched patient is invalid
      */
-    boolean updatePatient(Integer id, PatientDTO patientDTO) throws PatientNotFoundException;
+    PatientDTO patchPatient(Integer id, JsonNode patch) throws PatientNotFoundException, PatientVersionConflictException, InvalidPatientException;
 
     /**
      * Delete a patient by ID.
@@ -0,0 +1,61 @@
+package com.mediscreen.patient.service;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.exception.PatientNotFoundException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking service interface for managing patients, used by the reactive profile.
+ */
+public interface IReactivePatientService {
+
+    /**
+     * Get a patient by ID.
+     *
+     * @param id the patient ID
+     * @return the patient DTO, or an error with a PatientNotFoundException if the patient is not found
+     */
+    Mono<PatientDTO> getPatientById(Integer id);
+
+    /**
+     * Get a patient by its fullname, case and accent insensitive.
+     *
+     * @param family the patient family name
+     * @param given the patient given name
+     * @return the patient DTO, or an error with a PatientNotFoundException if the patient is not found
+     */
+    Mono<PatientDTO> getPatientByName(String family, String given);
+
+    /**
+     * Get all patients.
+     *
+     * @return the patient DTOs, ordered by ID
+     */
+    Flux<PatientDTO> getAllPatients();
+
+    /**
+     * Add a new patient.
+     *
+     * @param patientDTO the patient DTO to add
+     * @return true if the patient is added successfully, false otherwise
+     */
+    Mono<Boolean> addPatient(PatientDTO patientDTO);
+
+    /**
+     * Update an existing patient.
+     *
+     * @param id         the ID of the patient to update
+     * @param patientDTO the updated patient DTO
+     * @return true if the patient is updated, or an error with a PatientNotFoundException if the patient is not found
+     */
+    Mono<Boolean> updatePatient(Integer id, PatientDTO patientDTO);
+
+    /**
+     * Delete a patient by ID.
+     *
+     * @param id the ID of the patient to delete
+     * @return true if the patient is deleted, or an error with a PatientNotFoundException if the patient is not found
+     */
+    Mono<Boolean> deletePatient(Integer id);
+}
@@ -0,0 +1,135 @@
+package com.mediscreen.patient.service;
+
+import com.mediscreen.patient.dto.ImportErrorDTO;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.exception.InvalidImportException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads patients from a CSV document with a header row naming the PatientDTO fields, in any order.
+ * Fields may be quoted with double quotes, a quote inside a quoted field is escaped by doubling it.
+ */
+public final class PatientCsvReader {
+
+    private static final List<String> COLUMNS = List.of("family", "given", "dob", "sex", "address", "phone");
+
+    private PatientCsvReader() {
+    }
+
+    /**
+     * Read the patients of a CSV document. A row that cannot be read, because of its field count, an unterminated
+     * quote or its date of birth, is reported in the errors and left null in the patients, so the other rows keep
+     * their row numbers.
+     *
+     * @param csv    the CSV document
+     * @param errors the list the rejected rows are added to
+     * @return the patient DTOs, in the order of the rows, not validated
+     * @throws InvalidImportException if the header is missing or names an unknown column
+     */
+    public static List<PatientDTO> read(String csv, List<ImportErrorDTO> errors) {
+        List<String> lines = csv.lines().filter(line -> !line.isBlank()).toList();
+        if (lines.isEmpty()) throw new InvalidImportException("Missing CSV header");
+
+        Map<String, Integer> columns = readHeader(lines.get(0));
+        List<PatientDTO> patientDTOs = new ArrayList<>(lines.size() - 1);
+
+        for (int row = 1; row < lines.size(); row++) {
+            try {
+                patientDTOs.add(readRow(lines.get(row), columns));
+            } catch (IllegalArgumentException e) {
+                errors.add(new ImportErrorDTO(row, e.getMessage()));
+                patientDTOs.add(null);
+            }
+        }
+
+        return patientDTOs;
+    }
+
+    private static PatientDTO readRow(String line, Map<String, Integer> columns) {
+        List<String> fields = split(line);
+        if (fields.size() != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " fields but found " + fields.size());
+        }
+
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setFamily(field(fields, columns, "family"));
+        patientDTO.setGiven(field(fields, columns, "given"));
+        patientDTO.setSex(field(fields, columns, "sex"));
+        patientDTO.setAddress(field(fields, columns, "address"));
+        patientDTO.setPhone(field(fields, columns, "phone"));
+
+        String dob = field(fields, columns, "dob");
+        try {
+            patientDTO.setDob(dob == null ? null : LocalDate.parse(dob));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date of birth " + dob);
+        }
+
+        return patientDTO;
+    }
+
+    private static Map<String, Integer> readHeader(String header) {
+        List<String> names;
+        try {
+            names = split(header);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidImportException("CSV header: " + e.getMessage());
+        }
+        Map<String, Integer> columns = new HashMap<>();
+
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+            if (!COLUMNS.contains(name)) throw new InvalidImportException("Unknown CSV column: " + name);
+            columns.put(name, i);
+        }
+
+        return columns;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null) return null;
+
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) throw new IllegalArgumentException("Unterminated quoted field");
+        fields.add(field.toString());
+        return fields;
+    }
+}
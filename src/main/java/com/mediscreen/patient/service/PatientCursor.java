@@ -0,0 +1,47 @@
+package com.mediscreen.patient.service;
+
+import com.mediscreen.patient.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque cursors used for keyset paging on the patient id.
+ */
+public final class PatientCursor {
+
+    private static final String PREFIX = "id:";
+
+    private PatientCursor() {
+    }
+
+    /**
+     * Encode the id of the last patient of a page.
+     *
+     * @param lastId the last patient id returned
+     * @return the opaque cursor
+     */
+    public static String encode(Integer lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor to the id after which the next page starts.
+     *
+     * @param cursor the opaque cursor, null or blank for the first page
+     * @return the id to start after, 0 for the first page
+     * @throws InvalidCursorException if the cursor is malformed
+     */
+    public static int decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return 0;
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) throw new InvalidCursorException("Invalid cursor: " + cursor);
+            return Integer.parseInt(value.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.mediscreen.patient.service;
+
+import com.mediscreen.patient.logging.PatientLogEvents;
+import com.mediscreen.patient.repository.PatientBatchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the name lookup key of the patients saved before it existed, which the lookups by name would not find.
+ * Runs at startup, once the key is filled it only reads the name_key index.
+ */
+@Component
+public class PatientNameKeyBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(PatientNameKeyBackfill.class);
+
+    @Autowired
+    private PatientBatchRepository patientBatchRepository;
+
+    @Value("${patient.name-key.backfill-batch-size:1000}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long start = System.currentTimeMillis();
+        int updated = patientBatchRepository.backfillNameKeys(batchSize);
+        if (updated > 0) {
+            logger.info(PatientLogEvents.BULK, "Patient name keys filled patients={} millis={}", updated, System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -1,33 +1,152 @@
 package com.mediscreen.patient.service;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.mediscreen.patient.cache.PatientCache;
+import com.mediscreen.patient.config.ReplicaRoutingDataSource;
+import com.mediscreen.patient.dto.ImportErrorDTO;
+import com.mediscreen.patient.dto.ImportReportDTO;
+import com.mediscreen.patient.dto.PatientBatchDTO;
 import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.dto.PatientFilterDTO;
+import com.mediscreen.patient.dto.PatientPageDTO;
+import com.mediscreen.patient.dto.PatientQueryPageDTO;
+import com.mediscreen.patient.dto.PatientStatsDTO;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import com.mediscreen.patient.exception.InvalidBatchException;
+import com.mediscreen.patient.exception.InvalidPatientException;
+import com.mediscreen.patient.exception.InvalidQueryException;
 import com.mediscreen.patient.exception.PatientNotFoundException;
+import com.mediscreen.patient.exception.PatientVersionConflictException;
+import com.mediscreen.patient.logging.PatientLogEvents;
 import com.mediscreen.patient.model.MapstructMapper;
+import com.mediscreen.patient.model.NameNormalizer;
 import com.mediscreen.patient.model.Patient;
+import com.mediscreen.patient.repository.PatientBatchRepository;
+import com.mediscreen.patient.repository.PatientDobCount;
 import com.mediscreen.patient.repository.PatientRepository;
+import com.mediscreen.patient.repository.PatientSpecifications;
+import com.mediscreen.patient.search.PatientSearchIndex;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.mapstruct.factory.Mappers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Period;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class PatientService  implements IPatientService  {
+    private static final Logger logger = LoggerFactory.getLogger(PatientService.class);
+
+    /**
+     * Patient fields that can be selected by a query.
+     */
+    private static final List<String> QUERY_FIELDS = List.of("id", "family", "given", "sex", "dob", "address", "phone", "version");
+
+    /**
+     * Read the row from the database rather than from the second-level cache, which another instance's writes leave stale.
+     */
+    private static final Map<String, Object> BYPASS_CACHE = Map.of("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS);
+
     @Autowired
     private PatientRepository patientRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PatientSearchIndex patientSearchIndex;
+
+    @Autowired
+    private PatientBatchRepository patientBatchRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${patient.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${patient.search.max-results:100}")
+    private int maxSearchResults;
+
+    @Value("${patient.import.batch-size:500}")
+    private int importBatchSize;
+
+    @Value("${patient.batch.max-ids:1000}")
+    private int batchMaxIds;
+
+    @Value("${patient.batch.chunk-size:200}")
+    private int batchChunkSize;
+
+    @Value("${patient.stats.age-bands:18,30,40,50,60,70,80}")
+    private int[] ageBands;
+
+    @Value("${patient.stats.max-age:30s}")
+    private Duration statsMaxAge;
+
+    private volatile PatientStatsDTO patientStats;
+
     MapstructMapper mapper = Mappers.getMapper(MapstructMapper.class);
 
     @Override
     public PatientDTO getPatientById (Integer id) {
-        Optional<Patient> patient = patientRepository.findById(id);
+        PatientDTO cachedPatient = patientCache.getById(id);
+        if (cachedPatient != null) return cachedPatient;
+
+        long generation = patientCache.generation();
+        Optional<Patient> patient = cacheFillingRead(() -> patientRepository.findById(id));
 
         if (patient.isPresent()) {
             PatientDTO patientDTO = mapper.patientToDTO(patient.get());
+            patientCache.put(patientDTO, generation);
             return patientDTO;
         }
 
@@ -36,18 +155,73 @@ public class PatientService  implements IPatientService  {
 
     @Override
     public PatientDTO getPatientByName (String family, String given) {
-        Optional<Patient> patient = patientRepository.findByFamilyAndGiven(family, given);
+        PatientDTO cachedPatient = patientCache.getByName(family, given);
+        if (cachedPatient != null) return cachedPatient;
+
+        long generation = patientCache.generation();
+        Optional<Patient> patient = cacheFillingRead(() -> patientRepository.findFirstByNameKeyOrderByIdAsc(NameNormalizer.nameKey(family, given)));
 
         if (patient.isPresent()) {
             PatientDTO patientDTO = mapper.patientToDTO(patient.get());
+            patientCache.put(patientDTO, generation);
             return patientDTO;
         }
 
-        throw new PatientNotFoundException("Patient not found with name: " + family + given );
+        throw new PatientNotFoundException("Patient not found with this name");
+    }
+
+
+    @Override
+    public PatientBatchDTO getPatientsByIds(List<Integer> ids) {
+        Set<Integer> requestedIds = new LinkedHashSet<>(ids);
+        requestedIds.remove(null);
+        if (requestedIds.size() > batchMaxIds) {
+            throw new InvalidBatchException("At most " + batchMaxIds + " patient ids can be requested at once");
+        }
+
+        Map<Integer, PatientDTO> found = new HashMap<>();
+        List<Integer> uncachedIds = new ArrayList<>();
+
+        for (Integer id : requestedIds) {
+            PatientDTO cachedPatient = patientCache.getById(id);
+            if (cachedPatient != null) found.put(id, cachedPatient);
+            else uncachedIds.add(id);
+        }
+
+        // Bounded IN lists, so that a large batch never builds one huge statement
+        for (int from = 0; from < uncachedIds.size(); from += batchChunkSize) {
+            List<Integer> chunk = uncachedIds.subList(from, Math.min(from + batchChunkSize, uncachedIds.size()));
+
+            long generation = patientCache.generation();
+            for (Patient patient : cacheFillingRead(() -> patientRepository.findAllById(chunk))) {
+                PatientDTO patientDTO = mapper.patientToDTO(patient);
+                patientCache.put(patientDTO, generation);
+                found.put(patientDTO.getId(), patientDTO);
+            }
+        }
+
+        List<PatientDTO> patients = new ArrayList<>(found.size());
+        List<Integer> missingIds = new ArrayList<>();
+
+        for (Integer id : requestedIds) {
+            PatientDTO patientDTO = found.get(id);
+            if (patientDTO != null) patients.add(patientDTO);
+            else missingIds.add(id);
+        }
+
+        return new PatientBatchDTO(patients, missingIds);
     }
 
+    /**
+     * Read patients that go into the patient cache from the primary, as a lagging replica would cache a row that
+     * a write just evicted. They are read like the others when the cache is off.
+     */
+    private <T> T cacheFillingRead(Supplier<T> read) {
+        return patientCache.isEnabled() ? ReplicaRoutingDataSource.readFromPrimary(read) : read.get();
+    }
 
     @Override
+    @Transactional(readOnly = true)
     public List<PatientDTO> getAllPatients() {
         try {
             List<Patient> patients = patientRepository.findAll();
@@ -57,43 +231,328 @@ public class PatientService  implements IPatientService  {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public String getAllPatientsVersion() {
+        Long tableVersion = patientRepository.findTableVersion();
+        return String.valueOf(tableVersion == null ? 0 : tableVersion);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PatientDTO> getAllPatientsIfModified(Predicate<String> notModified) {
+        if (notModified.test(getAllPatientsVersion())) return null;
+        return getAllPatients();
+    }
+
+    @Override
+    public PatientStatsDTO getPatientStats() {
+        PatientStatsDTO stats = patientStats;
+        if (stats != null && Instant.now().isBefore(stats.getComputedAt().plus(statsMaxAge))) return stats;
+
+        LocalDate today = LocalDate.now();
+        Map<String, Long> bySex = new TreeMap<>();
+        Map<String, Long> byAgeBand = new LinkedHashMap<>();
+        for (int band = 0; band <= ageBands.length; band++) byAgeBand.put(ageBandLabel(band), 0L);
+        long total = 0;
+
+        for (PatientDobCount count : patientRepository.countBySexAndDob()) {
+            String sex = count.getSex() == null ? "unknown" : count.getSex();
+            bySex.merge(sex, count.getCount(), Long::sum);
+            byAgeBand.merge(ageBandLabel(ageBand(Period.between(count.getDob(), today).getYears())), count.getCount(), Long::sum);
+            total += count.getCount();
+        }
+
+        stats = new PatientStatsDTO(total, bySex, byAgeBand, Instant.now());
+        patientStats = stats;
+        return stats;
+    }
+
+    private int ageBand(int age) {
+        int band = 0;
+        while (band < ageBands.length && age >= ageBands[band]) band++;
+        return band;
+    }
+
+    private String ageBandLabel(int band) {
+        int from = band == 0 ? 0 : ageBands[band - 1];
+        return band == ageBands.length ? from + "+" : from + "-" + (ageBands[band] - 1);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PatientPageDTO getPatientPage(String cursor, int size) {
+        int afterId = PatientCursor.decode(cursor);
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+
+        // Fetch one extra row to know if there is a next page
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit + 1));
+
+        String nextCursor = null;
+        if (patients.size() > limit) {
+            patients = patients.subList(0, limit);
+            nextCursor = PatientCursor.encode(patients.get(limit - 1).getId());
+        }
+
+        return new PatientPageDTO(mapper.patientListToDTO(patients), nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PatientQueryPageDTO queryPatients(PatientFilterDTO filter, List<String> fields, String cursor, int size) {
+        int afterId = PatientCursor.decode(cursor);
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+
+        // The id comes first, it is needed for the next cursor
+        List<String> selectedFields = new ArrayList<>(List.of("id"));
+        for (String field : fields == null || fields.isEmpty() ? QUERY_FIELDS : fields) {
+            if (!QUERY_FIELDS.contains(field)) {
+                throw new InvalidQueryException("Unknown field: " + field + ", expected one of " + QUERY_FIELDS);
+            }
+            if (!selectedFields.contains(field)) selectedFields.add(field);
+        }
+
+        // Fetch one extra row to know if there is a next page
+        List<Map<String, Object>> patients = patientRepository.findFieldsAfterId(
+                PatientSpecifications.matching(filter), selectedFields, afterId, limit + 1);
+
+        String nextCursor = null;
+        if (patients.size() > limit) {
+            patients = patients.subList(0, limit);
+            nextCursor = PatientCursor.encode((Integer) patients.get(limit - 1).get("id"));
+        }
+
+        return new PatientQueryPageDTO(patients, nextCursor);
+    }
+
+    @Override
+    public List<PatientDTO> searchPatients(String query, int limit) {
+        return patientSearchIndex.search(query, Math.min(limit, maxSearchResults));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportPatients(Consumer<PatientDTO> consumer) {
+        long count = 0;
+
+        try (Stream<Patient> patients = patientRepository.streamAllByOrderByIdAsc()) {
+            Iterator<Patient> iterator = patients.iterator();
+
+            while (iterator.hasNext()) {
+                Patient patient = iterator.next();
+                consumer.accept(mapper.patientToDTO(patient));
+                // Detach each exported patient so the persistence context does not grow with the table
+                entityManager.detach(patient);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
     @Override
     public boolean addPatient(PatientDTO patientDTO) {
         try {
-            Patient patient = mapper.patientDTOToPatient(patientDTO);
-            patientRepository.save(patient);
+            // The change is recorded in the outbox in the same transaction as the patient
+            transactionTemplate.executeWithoutResult(status -> {
+                Patient savedPatient = patientRepository.save(mapper.patientDTOToPatient(patientDTO));
+                eventPublisher.publishEvent(PatientChangedEvent.created(mapper.patientToDTO(savedPatient)));
+                logger.info(PatientLogEvents.WRITE, "Patient created id={}", savedPatient.getId());
+            });
             return true;
         } catch (Exception e) {
-            e.printStackTrace();
+            // The cause can quote the rejected values, it is only logged in debug
+            logger.error(PatientLogEvents.WRITE, "Patient creation failed cause={}", e.getClass().getName());
+            logger.debug(PatientLogEvents.WRITE, "Patient creation failure", e);
             return false;
         }
     }
 
     @Override
+    public ImportReportDTO importPatients(List<PatientDTO> patientDTOs) {
+        return importPatients(patientDTOs, Map.of());
+    }
+
+    @Override
+    public ImportReportDTO importPatientsCsv(String csv) {
+        List<ImportErrorDTO> unreadRows = new ArrayList<>();
+        List<PatientDTO> patientDTOs = PatientCsvReader.read(csv, unreadRows);
+        return importPatients(patientDTOs, unreadRows.stream()
+                .collect(Collectors.toMap(ImportErrorDTO::getRow, Function.identity())));
+    }
+
+    /**
+     * Validate and insert the rows, the null ones are reported with their error from unreadRows or as empty.
+     */
+    private ImportReportDTO importPatients(List<PatientDTO> patientDTOs, Map<Integer, ImportErrorDTO> unreadRows) {
+        long start = System.nanoTime();
+        List<ImportErrorDTO> errors = new ArrayList<>();
+        List<PatientDTO> batch = new ArrayList<>(importBatchSize);
+        List<Integer> batchRows = new ArrayList<>(importBatchSize);
+        int imported = 0;
+
+        for (int i = 0; i < patientDTOs.size(); i++) {
+            PatientDTO patientDTO = patientDTOs.get(i);
+            int row = i + 1;
+
+            if (patientDTO == null) {
+                errors.add(unreadRows.getOrDefault(row, new ImportErrorDTO(row, "Empty row")));
+                continue;
+            }
+
+            Set<ConstraintViolation<PatientDTO>> violations = validator.validate(patientDTO);
+            if (!violations.isEmpty()) {
+                errors.add(new ImportErrorDTO(row, violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining(", "))));
+                continue;
+            }
+
+            batch.add(patientDTO);
+            batchRows.add(row);
+
+            if (batch.size() >= importBatchSize) {
+                imported += importBatch(batch, batchRows, errors);
+                batch.clear();
+                batchRows.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) imported += importBatch(batch, batchRows, errors);
+
+        long elapsedNanos = System.nanoTime() - start;
+        double rowsPerSecond = elapsedNanos == 0 ? 0 : imported * 1_000_000_000d / elapsedNanos;
+        logger.info(PatientLogEvents.BULK, "Patients imported received={} imported={} failed={}", patientDTOs.size(), imported, errors.size());
+        return new ImportReportDTO(patientDTOs.size(), imported, errors.size(), errors, elapsedNanos / 1_000_000, rowsPerSecond);
+    }
+
+    /**
+     * Insert a batch in one transaction. If the batch fails, its rows are retried one by one to report the failing ones.
+     */
+    private int importBatch(List<PatientDTO> batch, List<Integer> batchRows, List<ImportErrorDTO> errors) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertPatients(batch));
+            return batch.size();
+        } catch (DataAccessException e) {
+            int imported = 0;
+
+            for (int i = 0; i < batch.size(); i++) {
+                List<PatientDTO> single = List.of(batch.get(i));
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insertPatients(single));
+                    imported++;
+                } catch (DataAccessException rowException) {
+                    errors.add(new ImportErrorDTO(batchRows.get(i), rowException.getMostSpecificCause().getMessage()));
+                }
+            }
+
+            return imported;
+        }
+    }
+
+    private void insertPatients(List<PatientDTO> patientDTOs) {
+        List<Patient> patients = patientDTOs.stream().map(mapper::patientDTOToPatient).toList();
+        List<Integer> ids = patientBatchRepository.insertAll(patients);
+
+        for (int i = 0; i < patientDTOs.size(); i++) {
+            PatientDTO patientDTO = patientDTOs.get(i);
+            patientDTO.setId(ids.get(i));
+            eventPublisher.publishEvent(PatientChangedEvent.created(patientDTO));
+        }
+    }
+
+    @Override
+    @Transactional
     public boolean updatePatient(Integer id, PatientDTO patientDTO) {
-        Optional<Patient> optionalPatient = patientRepository.findById(id);
+        Integer expectedVersion = patientDTO.getVersion();
+        Patient patient = mapper.patientDTOToPatient(patientDTO);
+        patient.setId(id);
+        patient.setNameKey(NameNormalizer.nameKey(patient.getFamily(), patient.getGiven()));
+        patient.setLastModified(Instant.now());
 
-        if (optionalPatient.isPresent()) {
-            Patient patient = optionalPatient.get();
-            patientDTO.setId(id);
-            patient = mapper.patientDTOToPatient(patientDTO);
-            patientRepository.save(patient);
-            return true;
+        if (patientRepository.updateById(patient, expectedVersion) == 0) {
+            // Nothing updated: the patient is missing, or was updated since the version the client read
+            if (expectedVersion != null && patientRepository.existsById(id)) {
+                throw new PatientVersionConflictException("Patient with ID: " + id + " was modified since version " + expectedVersion);
+            }
+            throw new PatientNotFoundException("Patient not found with ID: " + id);
         }
 
-        throw new PatientNotFoundException("Patient not found with ID: " + id);
+        // Every column was written from the patient, the incremented version is only read back when it is not known
+        patient.setVersion(expectedVersion != null ? expectedVersion + 1 : patientRepository.findVersionById(id));
+        eventPublisher.publishEvent(PatientChangedEvent.updated(mapper.patientToDTO(patient)));
+        logger.info(PatientLogEvents.WRITE, "Patient updated id={}", id);
+        return true;
     }
 
 
     @Override
-    public boolean deletePatient(Integer id) {
-        Optional<Patient> optionalPatient = patientRepository.findById(id);
+    @Transactional
+    public PatientDTO patchPatient(Integer id, JsonNode patch) {
+        if (patch == null || !patch.isObject()) throw new InvalidPatientException("Patch must be a JSON object");
 
-        if (optionalPatient.isPresent()) {
-            patientRepository.deleteById(id);
-            return true;
+        // The version checked and written back must be the stored one
+        Patient patient = Optional.ofNullable(entityManager.find(Patient.class, id, BYPASS_CACHE))
+                .orElseThrow(() -> new PatientNotFoundException("Patient not found with ID: " + id));
+
+        JsonNode version = patch.get("version");
+        if (version != null && !version.isNull()) {
+            if (!version.isIntegralNumber() || !version.canConvertToInt()) {
+                throw new InvalidPatientException("Invalid patch: version must be an integer");
+            }
+            if (version.asInt() != patient.getVersion()) {
+                throw new PatientVersionConflictException("Patient with ID: " + id + " was modified since version " + version.asInt());
+            }
         }
+        Integer versionBefore = patient.getVersion();
 
-        throw new PatientNotFoundException("Patient not found with ID: " + id);
+        // Apply the present fields over the current state, then validate the result as a whole
+        PatientDTO patientDTO;
+        try {
+            patientDTO = objectMapper.readerForUpdating(mapper.patientToDTO(patient))
+                    .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(patch);
+        } catch (IOException e) {
+            throw new InvalidPatientException("Invalid patch: "
+                    + (e instanceof JsonProcessingException jsonException ? jsonException.getOriginalMessage() : e.getMessage()));
+        }
+
+        Set<ConstraintViolation<PatientDTO>> violations = validator.validate(patientDTO);
+        if (!violations.isEmpty()) {
+            throw new InvalidPatientException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+
+        mapper.updatePatientFromDTO(patientDTO, patient);
+
+        try {
+            // Dirty checking writes only the changed columns, guarded by the version
+            patientRepository.flush();
+        } catch (OptimisticLockingFailureException e) {
+            throw new PatientVersionConflictException("Patient with ID: " + id + " was modified concurrently");
+        }
+
+        PatientDTO patchedDTO = mapper.patientToDTO(patient);
+        // A patch that changes nothing is not written, and not a change
+        if (!versionBefore.equals(patient.getVersion())) {
+            eventPublisher.publishEvent(PatientChangedEvent.updated(patchedDTO));
+        }
+        logger.info(PatientLogEvents.WRITE, "Patient patched id={} version={}", id, patchedDTO.getVersion());
+        return patchedDTO;
+    }
+
+    @Override
+    @Transactional
+    public boolean deletePatient(Integer id) {
+        if (patientRepository.deletePatientById(id) == 0) {
+            throw new PatientNotFoundException("Patient not found with ID: " + id);
+        }
+
+        eventPublisher.publishEvent(PatientChangedEvent.deleted(id));
+        logger.info(PatientLogEvents.WRITE, "Patient deleted id={}", id);
+        return true;
     }
 }
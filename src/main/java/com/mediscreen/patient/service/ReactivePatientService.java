@@ -0,0 +1,222 @@
+package com.mediscreen.patient.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.patient.changes.PatientChangeOutbox;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import com.mediscreen.patient.exception.PatientNotFoundException;
+import com.mediscreen.patient.exception.PatientVersionConflictException;
+import com.mediscreen.patient.logging.PatientLogEvents;
+import com.mediscreen.patient.model.NameNormalizer;
+import io.r2dbc.spi.Readable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Patient service of the reactive profile, on R2DBC.
+ * <p>
+ * Each write records its change in the patient_change outbox and increments the patient table version in the same
+ * R2DBC transaction, as the blocking service does, then publishes it once committed so that the patient cache and the search index are updated.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePatientService implements IReactivePatientService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactivePatientService.class);
+
+    private static final String SELECT_SQL = "SELECT id, family_name, given_name, sex, date_of_birth, address, phone, version FROM patient";
+
+    private static final String OUTBOX_SQL = "INSERT INTO patient_change (change_type, patient_id, patient, changed_at) "
+            + "VALUES (:type, :patientId, :patient, CURRENT_TIMESTAMP(6))";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public Mono<PatientDTO> getPatientById(Integer id) {
+        return databaseClient.sql(SELECT_SQL + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactivePatientService::toDTO)
+                .one()
+                .switchIfEmpty(Mono.error(() -> new PatientNotFoundException("Patient not found with ID: " + id)));
+    }
+
+    @Override
+    public Mono<PatientDTO> getPatientByName(String family, String given) {
+        return databaseClient.sql(SELECT_SQL + " WHERE name_key = :nameKey ORDER BY id LIMIT 1")
+                .bind("nameKey", NameNormalizer.nameKey(family, given))
+                .map(ReactivePatientService::toDTO)
+                .one()
+                .switchIfEmpty(Mono.error(() -> new PatientNotFoundException("Patient not found with this name")));
+    }
+
+    @Override
+    public Flux<PatientDTO> getAllPatients() {
+        return databaseClient.sql(SELECT_SQL + " ORDER BY id")
+                .map(ReactivePatientService::toDTO)
+                .all();
+    }
+
+    @Override
+    public Mono<Boolean> addPatient(PatientDTO patientDTO) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("INSERT INTO patient "
+                + "(family_name, given_name, sex, date_of_birth, address, phone, name_key, version, last_modified) "
+                + "VALUES (:family, :given, :sex, :dob, :address, :phone, :nameKey, 0, :lastModified)");
+
+        Mono<PatientChangedEvent> created = bindPatient(spec, patientDTO)
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Integer.class))
+                .one()
+                .flatMap(this::findStored)
+                .flatMap(patient -> record(PatientChangedEvent.created(patient)));
+
+        return transactionalOperator.transactional(created)
+                .doOnNext(eventPublisher::publishEvent)
+                .map(event -> true)
+                .onErrorResume(e -> {
+                    // The cause can quote the rejected values, it is only logged in debug
+                    logger.error(PatientLogEvents.WRITE, "Patient creation failed cause={}", e.getClass().getName());
+                    logger.debug(PatientLogEvents.WRITE, "Patient creation failure", e);
+                    return Mono.just(false);
+                });
+    }
+
+    @Override
+    public Mono<Boolean> updatePatient(Integer id, PatientDTO patientDTO) {
+        Integer expectedVersion = patientDTO.getVersion();
+        String sql = "UPDATE patient SET family_name = :family, given_name = :given, sex = :sex, date_of_birth = :dob, "
+                + "address = :address, phone = :phone, name_key = :nameKey, last_modified = :lastModified, "
+                + "version = version + 1 WHERE id = :id";
+        DatabaseClient.GenericExecuteSpec spec = expectedVersion == null
+                ? databaseClient.sql(sql).bind("id", id)
+                : databaseClient.sql(sql + " AND version = :version").bind("id", id).bind("version", expectedVersion);
+
+        Mono<PatientChangedEvent> updated = bindPatient(spec, patientDTO)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(rows -> rows > 0 ? findStored(id) : updateFailure(id, expectedVersion))
+                .flatMap(patient -> record(PatientChangedEvent.updated(patient)));
+
+        return transactionalOperator.transactional(updated)
+                .doOnNext(eventPublisher::publishEvent)
+                .map(event -> true);
+    }
+
+    /**
+     * Tell a missing patient from one updated since the expected version, once an update changed nothing.
+     */
+    private Mono<PatientDTO> updateFailure(Integer id, Integer expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.error(new PatientNotFoundException("Patient not found with ID: " + id));
+        }
+
+        return databaseClient.sql("SELECT COUNT(*) AS found FROM patient WHERE id = :id")
+                .bind("id", id)
+                .map(row -> row.get("found", Long.class))
+                .one()
+                .flatMap(found -> Mono.<PatientDTO>error(found > 0
+                        ? new PatientVersionConflictException("Patient with ID: " + id + " was modified since version " + expectedVersion)
+                        : new PatientNotFoundException("Patient not found with ID: " + id)));
+    }
+
+    @Override
+    public Mono<Boolean> deletePatient(Integer id) {
+        Mono<PatientChangedEvent> deleted = databaseClient.sql("DELETE FROM patient WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(rows -> rows > 0
+                        ? record(PatientChangedEvent.deleted(id))
+                        : Mono.error(new PatientNotFoundException("Patient not found with ID: " + id)));
+
+        return transactionalOperator.transactional(deleted)
+                .doOnNext(eventPublisher::publishEvent)
+                .map(event -> true);
+    }
+
+    /**
+     * Read the patient as written, with its version, in the transaction of the write.
+     */
+    private Mono<PatientDTO> findStored(Integer id) {
+        return databaseClient.sql(SELECT_SQL + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactivePatientService::toDTO)
+                .one();
+    }
+
+    /**
+     * Write the change to the outbox and increment the table version, in the transaction of the change.
+     *
+     * @return the change, marked as recorded
+     */
+    private Mono<PatientChangedEvent> record(PatientChangedEvent event) {
+        return bind(databaseClient.sql(OUTBOX_SQL), "patient", toJson(event.getPatient()), String.class)
+                .bind("type", event.getType().name())
+                .bind("patientId", event.getPatientId())
+                .fetch()
+                .rowsUpdated()
+                .then(databaseClient.sql(PatientChangeOutbox.TABLE_VERSION_SQL).fetch().rowsUpdated())
+                .thenReturn(event.asRecorded());
+    }
+
+    private String toJson(PatientDTO patientDTO) {
+        if (patientDTO == null) return null;
+
+        try {
+            return objectMapper.writeValueAsString(patientDTO);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindPatient(DatabaseClient.GenericExecuteSpec spec, PatientDTO patientDTO) {
+        spec = bind(spec, "family", patientDTO.getFamily(), String.class);
+        spec = bind(spec, "given", patientDTO.getGiven(), String.class);
+        spec = bind(spec, "sex", patientDTO.getSex(), String.class);
+        spec = bind(spec, "dob", patientDTO.getDob(), LocalDate.class);
+        spec = bind(spec, "address", patientDTO.getAddress(), String.class);
+        spec = bind(spec, "phone", patientDTO.getPhone(), String.class);
+        return spec.bind("nameKey", NameNormalizer.nameKey(patientDTO.getFamily(), patientDTO.getGiven()))
+                .bind("lastModified", LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, String name, Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static PatientDTO toDTO(Readable row) {
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setId(row.get("id", Integer.class));
+        patientDTO.setFamily(row.get("family_name", String.class));
+        patientDTO.setGiven(row.get("given_name", String.class));
+        patientDTO.setSex(row.get("sex", String.class));
+        patientDTO.setDob(row.get("date_of_birth", LocalDate.class));
+        patientDTO.setAddress(row.get("address", String.class));
+        patientDTO.setPhone(row.get("phone", String.class));
+        patientDTO.setVersion(row.get("version", Integer.class));
+        return patientDTO;
+    }
+}
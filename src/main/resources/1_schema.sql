@@ -2,6 +2,9 @@ CREATE DATABASE IF NOT EXISTS mediscreen_patient;
 USE mediscreen_patient;
 
 DROP TABLE IF EXISTS patient;
+DROP TABLE IF EXISTS patient_change;
+DROP TABLE IF EXISTS patient_change_relay;
+DROP TABLE IF EXISTS patient_table_version;
 
 CREATE TABLE patient (
    id INT NOT NULL AUTO_INCREMENT,
@@ -11,6 +14,39 @@ CREATE TABLE patient (
    date_of_birth DATE NOT NULL,
    address VARCHAR(50) NULL,
    phone VARCHAR(15) NULL,
+   name_key VARCHAR(101) NULL,
+   version INT NOT NULL DEFAULT 0,
+   last_modified TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+   PRIMARY KEY (id),
+   INDEX idx_patient_family_given (family_name, given_name),
+   INDEX idx_patient_name_key (name_key),
+   INDEX idx_patient_sex_dob (sex, date_of_birth)
+);
+
+CREATE TABLE patient_change (
+   seq BIGINT NOT NULL AUTO_INCREMENT,
+   change_type VARCHAR(10) NOT NULL,
+   patient_id INT NOT NULL,
+   patient VARCHAR(1000) NULL,
+   changed_at TIMESTAMP(6) NOT NULL,
+   feed_seq BIGINT NULL,
+   PRIMARY KEY (seq),
+   INDEX idx_patient_change_changed_at (changed_at),
+   UNIQUE INDEX idx_patient_change_feed_seq (feed_seq)
+);
+
+CREATE TABLE patient_change_relay (
+   id INT NOT NULL,
+   last_feed_seq BIGINT NOT NULL,
+   PRIMARY KEY (id)
+);
+
+INSERT INTO patient_change_relay (id, last_feed_seq) VALUES (1, 0);
+
+CREATE TABLE patient_table_version (
+   id INT NOT NULL,
+   version BIGINT NOT NULL,
    PRIMARY KEY (id)
 );
 
+INSERT INTO patient_table_version (id, version) VALUES (1, 0);
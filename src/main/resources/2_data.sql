@@ -1,29 +1,29 @@
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Ferguson', 'Lucas', 'M', '1968-06-22', '2 Warren Street', '387-866-1399');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Ferguson', 'Lucas', 'M', '1968-06-22', '2 Warren Street', '387-866-1399', 'ferguson|lucas');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Rees', 'Pippa', 'F', '1952-09-27', '745 West Valley Farms Drive', '628-423-0993');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Rees', 'Pippa', 'F', '1952-09-27', '745 West Valley Farms Drive', '628-423-0993', 'rees|pippa');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Arnold', 'Edward', 'M', '1952-11-11', '599 East Garden Ave', '123-727-2779');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Arnold', 'Edward', 'M', '1952-11-11', '599 East Garden Ave', '123-727-2779', 'arnold|edward');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Sharp', 'Anthony', 'M', '1946-11-26', '894 Hall Street', '451-761-8383');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Sharp', 'Anthony', 'M', '1946-11-26', '894 Hall Street', '451-761-8383', 'sharp|anthony');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Ince', 'Wendy', 'F', '1958-06-29', '4 Southampton Road', '802-911-9975');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Ince', 'Wendy', 'F', '1958-06-29', '4 Southampton Road', '802-911-9975', 'ince|wendy');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Ross', 'Tracey', 'F', '1949-12-07', '40 Sulphur Springs Dr', '131-396-5049');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Ross', 'Tracey', 'F', '1949-12-07', '40 Sulphur Springs Dr', '131-396-5049', 'ross|tracey');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Wilson', 'Claire', 'F', '1966-12-31', '12 Cobblestone St', '300-452-1091');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Wilson', 'Claire', 'F', '1966-12-31', '12 Cobblestone St', '300-452-1091', 'wilson|claire');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Buckland', 'Max', 'M', '1945-06-24', '193 Vale St', '833-534-0864');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Buckland', 'Max', 'M', '1945-06-24', '193 Vale St', '833-534-0864', 'buckland|max');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Clark', 'Natalie', 'F', '1964-06-18', '12 Beechwood Road', '241-467-9197');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Clark', 'Natalie', 'F', '1964-06-18', '12 Beechwood Road', '241-467-9197', 'clark|natalie');
 
-INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('Bailey', 'Piers', 'M', '1959-06-28', '1202 Bumble Dr', '747-815-0557');
+INSERT INTO patient (family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('Bailey', 'Piers', 'M', '1959-06-28', '1202 Bumble Dr', '747-815-0557', 'bailey|piers');
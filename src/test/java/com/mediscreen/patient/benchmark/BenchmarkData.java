@@ -0,0 +1,75 @@
+package com.mediscreen.patient.benchmark;
+
+import com.mediscreen.patient.PatientApplication;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.model.Patient;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test data and application context shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final String[] FAMILY_NAMES = {"Smith", "Jones", "Taylor", "Brown", "Williams", "Wilson", "Johnson", "Davies", "Robinson", "Wright"};
+
+    static final String[] GIVEN_NAMES = {"Oliver", "Amelia", "George", "Isla", "Harry", "Ava", "Jack", "Emily", "Jacob", "Sophia"};
+
+    private BenchmarkData() {
+    }
+
+    static PatientDTO patientDTO(int i) {
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setId(i + 1);
+        patientDTO.setFamily(FAMILY_NAMES[i % FAMILY_NAMES.length] + (i / FAMILY_NAMES.length));
+        patientDTO.setGiven(GIVEN_NAMES[(i / 7) % GIVEN_NAMES.length]);
+        patientDTO.setSex(i % 2 == 0 ? "F" : "M");
+        patientDTO.setDob(LocalDate.of(1930, 1, 1).plusDays(i % 30000));
+        patientDTO.setAddress(i + " High Street");
+        patientDTO.setPhone("555-000-" + (i % 10000));
+        return patientDTO;
+    }
+
+    static List<PatientDTO> patientDTOs(int rows) {
+        List<PatientDTO> patientDTOs = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            patientDTOs.add(patientDTO(i));
+        }
+        return patientDTOs;
+    }
+
+    static List<Patient> patients(int rows) {
+        List<Patient> patients = new ArrayList<>(rows);
+        for (PatientDTO dto : patientDTOs(rows)) {
+            patients.add(new Patient(dto.getId(), dto.getFamily(), dto.getGiven(), dto.getSex(), dto.getDob(),
+                    dto.getAddress(), dto.getPhone(), null, null, null));
+        }
+        return patients;
+    }
+
+    /**
+     * Start the application without a web server on an in-memory H2 database, with the patient cache and the
+     * second-level cache off, so that the database path is measured.
+     */
+    static ConfigurableApplicationContext startApplication(String database) {
+        return new SpringApplicationBuilder(PatientApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.docker.compose.enabled=false",
+                        "--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.sql.init.mode=never",
+                        "--patient.cache.enabled=false",
+                        "--patient.second-level-cache.enabled=false",
+                        "--logging.level.root=WARN");
+    }
+}
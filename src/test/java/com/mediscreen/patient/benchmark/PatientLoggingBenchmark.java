@@ -0,0 +1,101 @@
+package com.mediscreen.patient.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.mediscreen.patient.logging.EventSamplingTurboFilter;
+import com.mediscreen.patient.logging.PatientLogEvents;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a request log line, as written before and after the parameterised logging, to run with -prof gc
+ * for the bytes allocated per request. Events are encoded with the console pattern into a discarding stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientLoggingBenchmark {
+
+    private final Integer id = 1234;
+
+    private final String family = "Doe";
+
+    private final String given = "John";
+
+    private Logger logger;
+
+    private Logger sampledLogger;
+
+    @Setup
+    public void setup() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+
+        EventSamplingTurboFilter samplingFilter = new EventSamplingTurboFilter();
+        samplingFilter.setContext(context);
+        samplingFilter.setRates("patient.read=100");
+        samplingFilter.start();
+        context.addTurboFilter(samplingFilter);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p --- [%15.15t] %-40.40logger{39} : %m%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.addAppender(appender);
+        root.setLevel(Level.INFO);
+
+        logger = context.getLogger("com.mediscreen.patient.controller.PatientController");
+        sampledLogger = context.getLogger("com.mediscreen.patient.benchmark.SampledController");
+        sampledLogger.setLevel(Level.DEBUG);
+    }
+
+    /**
+     * Before: the fullname request line, built and written on every request.
+     */
+    @Benchmark
+    public void concatenatedName() {
+        logger.info("Patient " + family + given + " requested");
+    }
+
+    /**
+     * Before: the id request line, built and written on every request.
+     */
+    @Benchmark
+    public void concatenatedId() {
+        logger.info("Patient " + id + " requested");
+    }
+
+    /**
+     * After, with the default levels: read events are under the logger level and never built.
+     */
+    @Benchmark
+    public void parameterizedDisabled() {
+        logger.debug(PatientLogEvents.READ, "Patient requested id={}", id);
+    }
+
+    /**
+     * After, with read events enabled: one in 100 is built and written.
+     */
+    @Benchmark
+    public void parameterizedSampled() {
+        sampledLogger.debug(PatientLogEvents.READ, "Patient requested id={}", id);
+    }
+}
@@ -0,0 +1,47 @@
+package com.mediscreen.patient.benchmark;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.model.MapstructMapper;
+import com.mediscreen.patient.model.Patient;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping, one patient at a time and as a list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientMapperBenchmark {
+
+    @Param({"1", "1000", "100000"})
+    private int rows;
+
+    private final MapstructMapper mapper = Mappers.getMapper(MapstructMapper.class);
+
+    private List<Patient> patients;
+
+    @Setup
+    public void setup() {
+        patients = BenchmarkData.patients(rows);
+    }
+
+    @Benchmark
+    public void patientToDTO(Blackhole blackhole) {
+        for (Patient patient : patients) {
+            blackhole.consume(mapper.patientToDTO(patient));
+        }
+    }
+
+    @Benchmark
+    public List<PatientDTO> patientListToDTO() {
+        return mapper.patientListToDTO(patients);
+    }
+}
@@ -0,0 +1,59 @@
+package com.mediscreen.patient.benchmark;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.model.NameNormalizer;
+import com.mediscreen.patient.model.Patient;
+import com.mediscreen.patient.repository.PatientRepository;
+import com.mediscreen.patient.service.IPatientService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name lookup before and after the name_key column: the exact family/given match the service used to run,
+ * against the seek on the normalised key that getPatientByName runs now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientNameLookupBenchmark {
+
+    @Param({"10000", "100000"})
+    private int patients;
+
+    private ConfigurableApplicationContext context;
+
+    private PatientRepository patientRepository;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkData.startApplication("name_lookup_benchmark");
+        patientRepository = context.getBean(PatientRepository.class);
+        context.getBean(IPatientService.class)
+                .importPatients(BenchmarkData.patientDTOs(patients));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Patient> findByFamilyAndGiven() {
+        PatientDTO patientDTO = BenchmarkData.patientDTO(ThreadLocalRandom.current().nextInt(patients));
+        return patientRepository.findByFamilyAndGiven(patientDTO.getFamily(), patientDTO.getGiven());
+    }
+
+    @Benchmark
+    public Optional<Patient> findByNameKey() {
+        PatientDTO patientDTO = BenchmarkData.patientDTO(ThreadLocalRandom.current().nextInt(patients));
+        return patientRepository.findFirstByNameKeyOrderByIdAsc(
+                NameNormalizer.nameKey(patientDTO.getFamily(), patientDTO.getGiven()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.mediscreen.patient.benchmark;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.repository.PatientBatchRepository;
+import com.mediscreen.patient.repository.PatientRepository;
+import com.mediscreen.patient.service.IPatientService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PatientService operations against an in-memory H2 database, patient cache off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatientServiceBenchmark {
+
+    @Param({"10000"})
+    private int patients;
+
+    private ConfigurableApplicationContext context;
+
+    private IPatientService patientService;
+
+    private PatientRepository patientRepository;
+
+    private PatientBatchRepository patientBatchRepository;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkData.startApplication("service_benchmark");
+        patientService = context.getBean(IPatientService.class);
+        patientRepository = context.getBean(PatientRepository.class);
+        patientBatchRepository = context.getBean(PatientBatchRepository.class);
+        patientService.importPatients(BenchmarkData.patientDTOs(patients));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * The patients removed by {@link #deletePatient(PatientsToDelete)}, inserted in one batch before each iteration,
+     * outside of the measured calls, and the ones left over removed after it. The pool must outlast an iteration.
+     */
+    @State(Scope.Thread)
+    public static class PatientsToDelete {
+
+        @Param({"100000"})
+        private int pool;
+
+        private Iterator<Integer> ids;
+
+        private List<Integer> inserted;
+
+        @Setup(Level.Iteration)
+        public void insert(PatientServiceBenchmark benchmark) {
+            inserted = benchmark.patientBatchRepository.insertAll(BenchmarkData.patients(pool));
+            ids = inserted.iterator();
+        }
+
+        @TearDown(Level.Iteration)
+        public void removeLeftOver(PatientServiceBenchmark benchmark) {
+            List<Integer> leftOver = new ArrayList<>();
+            ids.forEachRemaining(leftOver::add);
+            benchmark.patientRepository.deleteAllByIdInBatch(leftOver);
+        }
+
+        Integer next() {
+            if (!ids.hasNext()) throw new IllegalStateException("Pool of " + inserted.size() + " patients to delete exhausted, raise -p pool");
+            return ids.next();
+        }
+    }
+
+    @Benchmark
+    public PatientDTO getPatientById() {
+        return patientService.getPatientById(1 + ThreadLocalRandom.current().nextInt(patients));
+    }
+
+    @Benchmark
+    public PatientDTO getPatientByName() {
+        PatientDTO patientDTO = BenchmarkData.patientDTO(ThreadLocalRandom.current().nextInt(patients));
+        return patientService.getPatientByName(patientDTO.getFamily(), patientDTO.getGiven());
+    }
+
+    @Benchmark
+    public boolean addPatient() {
+        PatientDTO patientDTO = BenchmarkData.patientDTO(ThreadLocalRandom.current().nextInt(patients));
+        patientDTO.setId(null);
+        return patientService.addPatient(patientDTO);
+    }
+
+    @Benchmark
+    public boolean updatePatient() {
+        int i = ThreadLocalRandom.current().nextInt(patients);
+        PatientDTO patientDTO = BenchmarkData.patientDTO(i);
+        patientDTO.setPhone("555-111-" + ThreadLocalRandom.current().nextInt(10000));
+        return patientService.updatePatient(i + 1, patientDTO);
+    }
+
+    @Benchmark
+    public boolean deletePatient(PatientsToDelete patientsToDelete) {
+        return patientService.deletePatient(patientsToDelete.next());
+    }
+}
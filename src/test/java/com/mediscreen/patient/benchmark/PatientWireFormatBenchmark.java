@@ -0,0 +1,88 @@
+package com.mediscreen.patient.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.mediscreen.patient.dto.PatientDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading a list of patients in each format the service answers with, configured like the converters
+ * of WireFormatConfig. The size of the payload is reported next to the times, as the bytes secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientWireFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"10000"})
+    private int rows;
+
+    private List<PatientDTO> patientDTOs;
+
+    private byte[] payload;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        patientDTOs = BenchmarkData.patientDTOs(rows);
+        ObjectMapper objectMapper = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json().build();
+            case "smile" -> binaryMapper(SmileFactory.builder()
+                    .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                    .build());
+            case "cbor" -> binaryMapper(new CBORFactory());
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+        CollectionType listType = TypeFactory.defaultInstance().constructCollectionType(List.class, PatientDTO.class);
+        writer = objectMapper.writerFor(listType);
+        reader = objectMapper.readerFor(listType);
+        payload = writer.writeValueAsBytes(patientDTOs);
+    }
+
+    private static ObjectMapper binaryMapper(JsonFactory factory) {
+        return Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] write(PayloadSize payloadSize) throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(patientDTOs);
+        payloadSize.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public List<PatientDTO> read() throws IOException {
+        return reader.readValue(payload);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mediscreen.patient.cacheTest;
+
+import com.mediscreen.patient.cache.PatientCache;
+import com.mediscreen.patient.dto.CacheStatsDTO;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatientCacheTest {
+
+    private PatientCache patientCache;
+
+    @BeforeEach
+    public void setup() {
+        patientCache = new PatientCache(true, 100, Duration.ofMinutes(1));
+    }
+
+    private PatientDTO patient(Integer id, String family, String given) {
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setId(id);
+        patientDTO.setFamily(family);
+        patientDTO.setGiven(given);
+        return patientDTO;
+    }
+
+    @Test
+    public void testGetById() {
+        // GIVEN
+        // A patient is cached
+        PatientDTO patientDTO = patient(1, "Doe", "John");
+        patientCache.put(patientDTO, patientCache.generation());
+
+        // THEN
+        // It can be found by id and by name
+        assertSame(patientDTO, patientCache.getById(1));
+        assertSame(patientDTO, patientCache.getByName("Doe", "John"));
+        assertNull(patientCache.getById(2));
+    }
+
+    @Test
+    public void testOnPatientChanged_Updated() {
+        // GIVEN
+        // A patient is cached
+        patientCache.put(patient(1, "Doe", "John"), patientCache.generation());
+
+        // WHEN
+        // The patient is renamed
+        patientCache.onPatientChanged(PatientChangedEvent.updated(patient(1, "Doe", "Jane")));
+
+        // THEN
+        // Neither its id nor its former name are served from the cache
+        assertNull(patientCache.getById(1));
+        assertNull(patientCache.getByName("Doe", "John"));
+    }
+
+    @Test
+    public void testGetByName_Renamed() {
+        // GIVEN
+        // A patient is cached, then cached again with a new name
+        patientCache.put(patient(1, "Doe", "John"), patientCache.generation());
+        patientCache.put(patient(1, "Doe", "Jane"), patientCache.generation());
+
+        // THEN
+        // Only its new name is served from the cache
+        assertNull(patientCache.getByName("Doe", "John"));
+        assertNotNull(patientCache.getByName("Doe", "Jane"));
+    }
+
+    @Test
+    public void testGetStats() {
+        // GIVEN
+        // A cached patient is requested, then an unknown one
+        patientCache.put(patient(1, "Doe", "John"), patientCache.generation());
+        patientCache.getById(1);
+        patientCache.getById(2);
+
+        // THEN
+        // The statistics record one hit and one miss
+        CacheStatsDTO stats = patientCache.getStats().get(0);
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+    }
+
+    @Test
+    public void testDisabled() {
+        // GIVEN
+        // The cache is disabled
+        patientCache = new PatientCache(false, 100, Duration.ofMinutes(1));
+        patientCache.put(patient(1, "Doe", "John"), patientCache.generation());
+
+        // THEN
+        // Nothing is served from the cache
+        assertNull(patientCache.getById(1));
+    }
+
+    @Test
+    public void testPut_EvictedWhileLoading() {
+        // GIVEN
+        // A patient is loaded, and updated before it is cached
+        long generation = patientCache.generation();
+        patientCache.onPatientChanged(PatientChangedEvent.updated(patient(1, "Doe", "Jane")));
+
+        // WHEN
+        // The loaded patient is cached
+        patientCache.put(patient(1, "Doe", "John"), generation);
+
+        // THEN
+        // The loaded patient is older than the update, it is not cached
+        assertNull(patientCache.getById(1));
+    }
+
+    @Test
+    public void testPut_KeepsNewestVersion() {
+        // GIVEN
+        // A patient is cached at version 3
+        PatientDTO newer = patient(1, "Doe", "John");
+        newer.setVersion(3);
+        patientCache.put(newer, patientCache.generation());
+
+        // WHEN
+        // An older version of it is cached
+        PatientDTO older = patient(1, "Doe", "John");
+        older.setVersion(2);
+        patientCache.put(older, patientCache.generation());
+
+        // THEN
+        // The newest version stays
+        assertSame(newer, patientCache.getById(1));
+    }
+}
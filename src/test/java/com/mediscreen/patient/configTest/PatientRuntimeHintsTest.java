@@ -0,0 +1,62 @@
+package com.mediscreen.patient.configTest;
+
+import com.mediscreen.patient.config.PatientRuntimeHints;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.logging.EventSamplingTurboFilter;
+import com.mediscreen.patient.model.Patient;
+import com.mediscreen.patient.repository.PatientDobCount;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.SpringProxy;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.core.DecoratingProxy;
+import org.springframework.data.projection.TargetAware;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PatientRuntimeHintsTest {
+
+    private RuntimeHints hints;
+
+    @BeforeEach
+    public void setup() {
+        hints = new RuntimeHints();
+        new PatientRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    public void testRegisterHints_MapstructMapper() {
+        // THEN
+        // The generated mapper can be instantiated by name
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onType(TypeReference.of("com.mediscreen.patient.model.MapstructMapperImpl"))
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+    }
+
+    @Test
+    public void testRegisterHints_Entity() throws NoSuchFieldException {
+        // THEN
+        // Hibernate can access the entity fields
+        assertTrue(RuntimeHintsPredicates.reflection().onField(Patient.class.getDeclaredField("family")).test(hints));
+    }
+
+    @Test
+    public void testRegisterHints_Projection() {
+        // THEN
+        // Spring Data can proxy the interface projection
+        assertTrue(RuntimeHintsPredicates.proxies().forInterfaces(PatientDobCount.class, TargetAware.class,
+                SpringProxy.class, Advised.class, DecoratingProxy.class).test(hints));
+    }
+
+    @Test
+    public void testRegisterHints_SchemasAndLogging() throws NoSuchMethodException {
+        // THEN
+        // springdoc can introspect the schemas, and logback can configure the sampling filter
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(PatientDTO.class.getMethod("getFamily")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(EventSamplingTurboFilter.class.getMethod("setRates", String.class)).test(hints));
+    }
+}
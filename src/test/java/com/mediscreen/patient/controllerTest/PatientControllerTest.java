@@ -6,8 +6,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.mediscreen.patient.cache.PatientCache;
 import com.mediscreen.patient.controller.PatientController;
+import com.mediscreen.patient.dto.PatientBatchDTO;
 import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.repository.PatientRepository;
+import com.mediscreen.patient.search.PatientSearchIndex;
+import com.mediscreen.patient.service.PatientNameKeyBackfill;
 import com.mediscreen.patient.service.PatientService;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -20,6 +25,7 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.jdbc.SqlScriptsTestExecutionListener;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.validation.BindingResult;
@@ -28,14 +34,27 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hibernate.validator.internal.util.Contracts.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.springframework.core.io.ClassPathResource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import javax.sql.DataSource;
 
 @SpringBootTest
@@ -60,12 +79,26 @@ class PatientControllerTest {
     private DataSource dataSource;
     @Autowired
     private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PatientCache patientCache;
+    @Autowired
+    private PatientSearchIndex patientSearchIndex;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private PatientNameKeyBackfill patientNameKeyBackfill;
     @BeforeEach
     public void setupData() {
         Resource schemaScript = new ClassPathResource("1_schema_test.sql");
         Resource dataScript = new ClassPathResource("2_data_test.sql");
         ResourceDatabasePopulator populator = new ResourceDatabasePopulator(schemaScript, dataScript);
         populator.execute(dataSource);
+        patientCache.clear();
+        // The scripts rewrite the table behind Hibernate
+        entityManagerFactory.getCache().unwrap(Cache.class).evictAllRegions();
+        patientSearchIndex.rebuild();
     }
 
     @Test
@@ -103,6 +136,32 @@ class PatientControllerTest {
         mvc.perform(get("/patient?family=Jones&given=Sophia")).andExpect(status().isOk());
     }
 
+    @Test
+    void testGetPatientByName_CaseAndAccentInsensitive() throws Exception {
+        // THEN
+        // I get the patient whatever the case and accents of its name
+        mvc.perform(get("/patient?family=JOHNSON&given=Emília"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(2));
+    }
+
+    @Test
+    void testGetPatientByName_NameKeyBackfill() throws Exception {
+        // GIVEN
+        // A patient saved before the name key existed
+        jdbcTemplate.update("UPDATE patient SET name_key = NULL WHERE id = 2");
+
+        // WHEN
+        // The name keys are filled at startup
+        patientNameKeyBackfill.backfill();
+
+        // THEN
+        // The patient is found by name
+        mvc.perform(get("/patient?family=johnson&given=EMILIA"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(2));
+    }
+
     @Test
     void testGetPatientList() throws Exception {
         // GIVEN
@@ -118,6 +177,74 @@ class PatientControllerTest {
         mvc.perform(get("/patient/all")).andExpect(status().isOk());
     }
 
+    @Test
+    void testGetPatientPage() throws Exception {
+        // GIVEN
+        // There are already patients in db
+
+        // THEN
+        // I get the first page and a cursor to the next one
+        mvc.perform(get("/patient/page?size=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients.length()").value(2))
+                .andExpect(jsonPath("$.patients[0].id").value(1))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty());
+    }
+
+    @Test
+    void testGetPatientPage_InvalidCursor() throws Exception {
+        // THEN
+        mvc.perform(get("/patient/page?cursor=invalid")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSearchPatients() throws Exception {
+        // GIVEN
+        // There are already patients in db
+
+        // THEN
+        // I get the patients whose names start with the query, exact matches first
+        mvc.perform(get("/patient/search?q=john"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].family").value("Doe"))
+                .andExpect(jsonPath("$[1].family").value("Johnson"));
+    }
+
+    @Test
+    void testExportPatients() throws Exception {
+        // GIVEN
+        // There are already patients in db
+
+        // WHEN
+        // I export the patients
+        MvcResult mvcResult = mvc.perform(get("/patient/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // THEN
+        // I get one JSON line per patient
+        String body = mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(5, body.lines().count());
+    }
+
+    @Test
+    void testGetCacheStats() throws Exception {
+        // WHEN
+        // I request a patient twice
+        mvc.perform(get("/patient/2")).andExpect(status().isOk());
+        mvc.perform(get("/patient/2")).andExpect(status().isOk());
+
+        // THEN
+        // The cache statistics record the hit
+        mvc.perform(get("/patient/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("patientById"));
+    }
+
     @Test
     void testAddPatient() throws Exception {
         // GIVEN
@@ -154,6 +281,80 @@ class PatientControllerTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    void testImportPatients() throws Exception {
+        // GIVEN
+        // There is a valid patient and an invalid one to import
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setFamily("Smith");
+        patientDTO.setGiven("John");
+        patientDTO.setSex("M");
+        patientDTO.setDob(LocalDate.of(2000, 10, 10));
+        List<PatientDTO> patientDTOs = List.of(patientDTO, new PatientDTO());
+
+        // THEN
+        // The valid patient is imported and the invalid one reported
+        mvc.perform(post("/patient/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientDTOs)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2));
+    }
+
+    @Test
+    void testImportPatientsCsv() throws Exception {
+        // GIVEN
+        // There is a CSV document with two patients
+        String csv = "family,given,dob,sex,address,phone\n"
+                + "Smith,John,2000-10-10,M,\"1, Main Street\",555-123-4567\n"
+                + "Doe,Jane,1990-01-01,F,,\n";
+
+        // THEN
+        // Both patients are imported
+        mvc.perform(post("/patient/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2));
+        mvc.perform(get("/patient?family=Smith&given=John"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.address").value("1, Main Street"));
+    }
+
+    @Test
+    void testImportPatientsCsv_UnreadableRows() throws Exception {
+        // GIVEN
+        // There is a CSV document with a valid row between rows that cannot be read
+        String csv = "family,given,dob,sex,address,phone\n"
+                + "Smith,John,2000-10-10,M\n"
+                + "Doe,Jane,1990-01-01,F,,\n"
+                + "Doe,Jim,1990-13-01,M,,\n"
+                + "Doe,Joe,1990-01-01,M,\"1, Main Street,\n";
+
+        // THEN
+        // The valid row is imported and the others are reported with their row number
+        mvc.perform(post("/patient/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(4))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(3))
+                .andExpect(jsonPath("$.errors[0].row").value(1))
+                .andExpect(jsonPath("$.errors[1].row").value(3))
+                .andExpect(jsonPath("$.errors[2].row").value(4));
+    }
+
+    @Test
+    void testImportPatientsCsv_Malformed() throws Exception {
+        // THEN
+        mvc.perform(post("/patient/import")
+                        .contentType("text/csv")
+                        .content("family,unknown\nSmith,x\n"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testUpdatePatient() throws Exception {
         // GIVEN
@@ -197,6 +398,257 @@ class PatientControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testUpdatePatient_Version() throws Exception {
+        // GIVEN
+        // I read the patient, with its version
+        PatientDTO patientDTO = objectMapper.readValue(mvc.perform(get("/patient/1"))
+                .andReturn().getResponse().getContentAsString(), PatientDTO.class);
+        patientDTO.setGiven("Jon");
+
+        // WHEN
+        // I update it from that version
+        mvc.perform(put("/patient/update/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientDTO)))
+                .andExpect(status().isOk());
+
+        // THEN
+        // The version is incremented and an update from the stale version is rejected
+        mvc.perform(get("/patient/1"))
+                .andExpect(jsonPath("$.given").value("Jon"))
+                .andExpect(jsonPath("$.version").value(patientDTO.getVersion() + 1));
+        mvc.perform(put("/patient/update/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientDTO)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testUpdatePatient_NotFound() throws Exception {
+        // GIVEN
+        // There is no patient with this id
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setGiven("Jon");
+        patientDTO.setFamily("Doe");
+        patientDTO.setSex("M");
+        patientDTO.setDob(LocalDate.of(1980, 5, 10));
+
+        // THEN
+        // it shouldn't update any patient
+        mvc.perform(put("/patient/update/99")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(patientDTO)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testDeletePatient_NotFound() throws Exception {
+        // THEN
+        // it shouldn't delete any patient
+        mvc.perform(delete("/patient/99")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetPatientById_NotModified() throws Exception {
+        // GIVEN
+        // I got the patient with its ETag
+        String etag = mvc.perform(get("/patient/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        // THEN
+        // The same ETag gets a 304 without body, until the patient is updated
+        mvc.perform(get("/patient/1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mvc.perform(patch("/patient/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"phone\": \"555-999-9999\"}"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/patient/1").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetPatientList_NotModified() throws Exception {
+        // GIVEN
+        // I got the list with its ETag
+        String etag = mvc.perform(get("/patient/all"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        // THEN
+        // The same ETag gets a 304 without body, until a patient is deleted
+        mvc.perform(get("/patient/all").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mvc.perform(delete("/patient/2")).andExpect(status().isOk());
+        mvc.perform(get("/patient/all").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4));
+    }
+
+    @Test
+    void testGetPatientById_ETagPerFormat() throws Exception {
+        // GIVEN
+        // I got the patient in JSON with its ETag
+        String etag = mvc.perform(get("/patient/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // WHEN
+        // I revalidate it for a CBOR response
+        String cborEtag = mvc.perform(get("/patient/1").accept(MediaType.APPLICATION_CBOR).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // THEN
+        // The CBOR representation has its own ETag
+        assertNotEquals(etag, cborEtag);
+        mvc.perform(get("/patient/1").accept(MediaType.APPLICATION_CBOR).header("If-None-Match", cborEtag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testGetPatientList_ETagPerFormat() throws Exception {
+        // GIVEN
+        // I got the list in Smile with its ETag
+        String etag = mvc.perform(get("/patient/all").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // THEN
+        // It doesn't validate the JSON representation
+        mvc.perform(get("/patient/all").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void testGetPatientsByIds() throws Exception {
+        // THEN
+        // I get the existing patients and the missing ids
+        mvc.perform(post("/patient/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[3, 1, 99]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients.length()").value(2))
+                .andExpect(jsonPath("$.patients[0].id").value(3))
+                .andExpect(jsonPath("$.patients[1].id").value(1))
+                .andExpect(jsonPath("$.missingIds[0]").value(99));
+    }
+
+    @Test
+    void testGetPatientById_Smile() throws Exception {
+        // WHEN
+        // An internal caller asks for Smile
+        MvcResult mvcResult = mvc.perform(get("/patient/1").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andExpect(header().string("Vary", containsString("Accept")))
+                .andReturn();
+
+        // THEN
+        // It reads the patient with a Smile mapper
+        PatientDTO patientDTO = new ObjectMapper(new SmileFactory()).findAndRegisterModules()
+                .readValue(mvcResult.getResponse().getContentAsByteArray(), PatientDTO.class);
+        assertEquals("Doe", patientDTO.getFamily());
+        assertEquals(LocalDate.of(1980, 5, 10), patientDTO.getDob());
+    }
+
+    @Test
+    void testGetPatientsByIds_Cbor() throws Exception {
+        // WHEN
+        // An internal caller asks for CBOR
+        MvcResult mvcResult = mvc.perform(post("/patient/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content("[3, 1, 99]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        // THEN
+        // It reads the batch with a CBOR mapper
+        PatientBatchDTO patientBatchDTO = new ObjectMapper(new CBORFactory()).findAndRegisterModules()
+                .readValue(mvcResult.getResponse().getContentAsByteArray(), PatientBatchDTO.class);
+        assertEquals(List.of(3, 1), patientBatchDTO.getPatients().stream().map(PatientDTO::getId).toList());
+        assertEquals(List.of(99), patientBatchDTO.getMissingIds());
+    }
+
+    @Test
+    void testGetPatientList_JsonByDefault() throws Exception {
+        // THEN
+        // Callers that accept anything still get JSON
+        mvc.perform(get("/patient/all").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(5));
+    }
+
+    @Test
+    void testPatchPatient() throws Exception {
+        // THEN
+        // Only the phone is changed
+        mvc.perform(patch("/patient/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"phone\": \"555-999-9999\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phone").value("555-999-9999"))
+                .andExpect(jsonPath("$.version").value(1));
+        mvc.perform(get("/patient/1"))
+                .andExpect(jsonPath("$.family").value("Doe"))
+                .andExpect(jsonPath("$.phone").value("555-999-9999"));
+    }
+
+    @Test
+    void testPatchPatient_UpdatedByAnotherInstance() throws Exception {
+        // GIVEN
+        // The patient is in the second-level cache, then updated by another instance
+        mvc.perform(get("/patient/1")).andExpect(status().isOk());
+        jdbcTemplate.update("UPDATE patient SET phone = '555-888-8888', version = 1 WHERE id = 1");
+
+        // THEN
+        // A patch from the stored version is applied
+        mvc.perform(patch("/patient/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\": \"2 High St\", \"version\": 1}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phone").value("555-888-8888"))
+                .andExpect(jsonPath("$.version").value(2));
+    }
+
+    @Test
+    void testPatchPatient_Name() throws Exception {
+        // WHEN
+        // The family name is patched
+        mvc.perform(patch("/patient/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"family\": \"Smïth\"}"))
+                .andExpect(status().isOk());
+
+        // THEN
+        // The patient is found by its new name
+        mvc.perform(get("/patient?family=SMITH&given=john"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.family").value("Smïth"));
+    }
+
+    @Test
+    void testPatchPatient_InvalidData() throws Exception {
+        // THEN
+        // A mandatory field can't be cleared
+        mvc.perform(patch("/patient/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"family\": null}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testDeletePatient() throws Exception {
         // WHEN
@@ -207,4 +659,200 @@ class PatientControllerTest {
         // it shouldn't update the patient
         mvc.perform(delete("/patient/1")).andExpect(status().isOk());
     }
+
+    @Test
+    void testGetChanges_UpdateWithoutVersion() throws Exception {
+        // GIVEN
+        // A patient is updated without the version it was read at
+        mvc.perform(put("/patient/update/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"family\": \"Doe\", \"given\": \"John\", \"sex\": \"M\", \"dob\": \"1980-05-10\", \"phone\": \"555-999-9999\"}"))
+                .andExpect(status().isOk());
+
+        // THEN
+        // The change carries the stored state, with its new version
+        mvc.perform(asyncDispatch(mvc.perform(get("/patient/changes?since=0&wait=0")).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[0].type").value("UPDATED"))
+                .andExpect(jsonPath("$.changes[0].patient.id").value(1))
+                .andExpect(jsonPath("$.changes[0].patient.version").isNumber())
+                .andExpect(jsonPath("$.changes[0].patient.phone").value("555-999-9999"));
+    }
+
+    @Test
+    void testGetChanges() throws Exception {
+        // GIVEN
+        // A patient is patched then deleted
+        mvc.perform(patch("/patient/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"phone\": \"555-999-9999\"}"))
+                .andExpect(status().isOk());
+        mvc.perform(delete("/patient/1")).andExpect(status().isOk());
+
+        // THEN
+        // I get them in order
+        mvc.perform(asyncDispatch(mvc.perform(get("/patient/changes?since=0&wait=0")).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(2))
+                .andExpect(jsonPath("$.changes[0].type").value("UPDATED"))
+                .andExpect(jsonPath("$.changes[0].patient.phone").value("555-999-9999"))
+                .andExpect(jsonPath("$.changes[1].type").value("DELETED"))
+                .andExpect(jsonPath("$.changes[1].patientId").value(1))
+                .andExpect(jsonPath("$.nextSince").value(2));
+    }
+
+    @Test
+    void testGetChanges_CommittedOutOfOrder() throws Exception {
+        // GIVEN
+        // A consumer has read the change of seq 5
+        jdbcTemplate.update("INSERT INTO patient_change (seq, change_type, patient_id, changed_at) VALUES (5, 'DELETED', 2, CURRENT_TIMESTAMP(6))");
+        mvc.perform(asyncDispatch(mvc.perform(get("/patient/changes?since=0&wait=0")).andReturn()))
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.nextSince").value(1));
+
+        // WHEN
+        // A transaction that took seq 4 commits after
+        jdbcTemplate.update("INSERT INTO patient_change (seq, change_type, patient_id, changed_at) VALUES (4, 'DELETED', 3, CURRENT_TIMESTAMP(6))");
+
+        // THEN
+        // The consumer still gets its change
+        mvc.perform(asyncDispatch(mvc.perform(get("/patient/changes?since=1&wait=0")).andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(1))
+                .andExpect(jsonPath("$.changes[0].patientId").value(3))
+                .andExpect(jsonPath("$.nextSince").value(2));
+    }
+
+    @Test
+    void testGetChanges_WaitsForNextChange() throws Exception {
+        // GIVEN
+        // A consumer is waiting for changes
+        MvcResult mvcResult = mvc.perform(get("/patient/changes?since=0&wait=10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // WHEN
+        // A patient is added
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add("family", "Smith");
+        formData.add("given", "Anna");
+        formData.add("dob", "1990-04-12");
+        formData.add("sex", "F");
+        mvc.perform(post("/patient/add")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .params(formData))
+                .andExpect(status().isCreated());
+
+        // THEN
+        // The consumer gets the change
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[0].type").value("CREATED"))
+                .andExpect(jsonPath("$.changes[0].patient.family").value("Smith"));
+    }
+
+    @Test
+    void testGetChanges_NoChange() throws Exception {
+        // THEN
+        // The request returns an empty result when nothing changed during the wait
+        MvcResult mvcResult = mvc.perform(get("/patient/changes?since=0&wait=1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes.length()").value(0))
+                .andExpect(jsonPath("$.nextSince").value(0));
+    }
+
+    @Test
+    void testGetIntakeStatus_UnknownToken() throws Exception {
+        // THEN
+        // An unknown token is not found
+        mvc.perform(get("/patient/intake/unknown")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetPatientStats() throws Exception {
+        // THEN
+        // The patients in db are counted by sex and age band
+        mvc.perform(get("/patient/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(5))
+                .andExpect(jsonPath("$.bySex.F").value(3))
+                .andExpect(jsonPath("$.bySex.M").value(2))
+                .andExpect(jsonPath("$.byAgeBand['0-17']").value(0));
+    }
+
+    @Test
+    void testQueryPatients() throws Exception {
+        // THEN
+        // Only the requested fields of the matching patients are returned, page by page
+        String nextCursor = objectMapper.readTree(mvc.perform(get("/patient/query?sex=F&dobFrom=1990-01-01&fields=family&size=1"))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.patients.length()").value(1))
+                        .andExpect(jsonPath("$.patients[0].id").value(2))
+                        .andExpect(jsonPath("$.patients[0].family").value("Johnson"))
+                        .andExpect(jsonPath("$.patients[0].given").doesNotExist())
+                        .andReturn().getResponse().getContentAsString())
+                .get("nextCursor").asText();
+        mvc.perform(get("/patient/query?sex=F&dobFrom=1990-01-01&fields=family&size=1&cursor=" + nextCursor))
+                .andExpect(jsonPath("$.patients[0].family").value("Jones"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void testQueryPatients_AddressPrefix() throws Exception {
+        // THEN
+        // The address prefix is matched literally
+        mvc.perform(get("/patient/query?addressPrefix=321 Ma&fields=dob"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patients.length()").value(1))
+                .andExpect(jsonPath("$.patients[0].dob").value("1988-07-05"));
+        mvc.perform(get("/patient/query?addressPrefix=%25Main"))
+                .andExpect(jsonPath("$.patients.length()").value(0));
+    }
+
+    @Test
+    void testQueryPatients_UnknownField() throws Exception {
+        mvc.perform(get("/patient/query?fields=nameKey")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSecondLevelCache() throws Exception {
+        // GIVEN
+        // The statistics are reset
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // WHEN
+        // A patient is looked up twice by name past the patient DTO cache, and twice by id
+        mvc.perform(get("/patient?family=Doe&given=John")).andExpect(status().isOk());
+        patientCache.clear();
+        mvc.perform(get("/patient?family=Doe&given=John")).andExpect(status().isOk());
+        patientRepository.findById(2);
+        patientRepository.findById(2);
+
+        // THEN
+        // The second lookups are served by the query and entity regions, the cached query result holding the id
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(2, statistics.getDomainDataRegionStatistics("patient").getHitCount());
+    }
+
+    @Test
+    void testSecondLevelCache_ImportEvictsQueries() throws Exception {
+        // GIVEN
+        // A missing patient is looked up, and the empty result is cached
+        mvc.perform(get("/patient?family=Smith&given=John")).andExpect(status().isNotFound());
+
+        // WHEN
+        // The patient is imported through JDBC
+        mvc.perform(post("/patient/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"family\": \"Smith\", \"given\": \"John\", \"dob\": \"1990-04-12\", \"sex\": \"M\"}]"))
+                .andExpect(status().isOk());
+
+        // THEN
+        // The lookup finds it
+        mvc.perform(get("/patient?family=Smith&given=John")).andExpect(status().isOk());
+    }
 }
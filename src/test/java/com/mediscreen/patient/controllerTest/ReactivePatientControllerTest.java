@@ -0,0 +1,180 @@
+package com.mediscreen.patient.controllerTest;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+class ReactivePatientControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @BeforeEach
+    public void setupData() {
+        Resource schemaScript = new ClassPathResource("1_schema_test.sql");
+        Resource dataScript = new ClassPathResource("2_data_test.sql");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(schemaScript, dataScript);
+        populator.execute(dataSource);
+    }
+
+    @Test
+    void testGetPatientById() {
+        // THEN
+        // I get the information about the patient I requested
+        webTestClient.get().uri("/patient/1").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.family").isEqualTo("Doe");
+    }
+
+    @Test
+    void testGetPatientById_NotFound() {
+        // THEN
+        // I get a not found status for an unknown patient
+        webTestClient.get().uri("/patient/99").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testGetPatientByName() {
+        // THEN
+        // I get the patient whatever the case of its name
+        webTestClient.get().uri("/patient?family=jones&given=SOPHIA").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.id").isEqualTo(5);
+    }
+
+    @Test
+    void testGetPatientList() {
+        // THEN
+        // I get all the patients
+        webTestClient.get().uri("/patient/all").exchange()
+                .expectStatus().isOk()
+                .expectBodyList(PatientDTO.class).hasSize(5);
+    }
+
+    @Test
+    void testAddPatient() {
+        // THEN
+        // The patient is created
+        webTestClient.post().uri("/patient/add")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData("family", "Smith")
+                        .with("given", "John")
+                        .with("sex", "M")
+                        .with("dob", "2000-10-10"))
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    @Test
+    void testUpdatePatient() {
+        // GIVEN
+        // There is a patient to update with valid data
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setGiven("Jon");
+        patientDTO.setFamily("Doe");
+        patientDTO.setSex("M");
+        patientDTO.setDob(LocalDate.of(1980, 5, 10));
+
+        // THEN
+        // it should update the patient
+        webTestClient.put().uri("/patient/update/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(patientDTO)
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.get().uri("/patient/1").exchange()
+                .expectBody().jsonPath("$.given").isEqualTo("Jon");
+    }
+
+    @Test
+    void testUpdatePatient_InvalidData() {
+        // THEN
+        // it shouldn't update the patient
+        webTestClient.put().uri("/patient/update/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new PatientDTO())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void testUpdatePatient_VersionConflict() {
+        // GIVEN
+        // The patient is updated from version 0
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setGiven("Jon");
+        patientDTO.setFamily("Doe");
+        patientDTO.setSex("M");
+        patientDTO.setDob(LocalDate.of(1980, 5, 10));
+        patientDTO.setVersion(0);
+        webTestClient.put().uri("/patient/update/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(patientDTO)
+                .exchange()
+                .expectStatus().isOk();
+
+        // THEN
+        // A second update from version 0 is rejected
+        webTestClient.put().uri("/patient/update/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(patientDTO)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    void testDeletePatient() {
+        // THEN
+        // The patient is deleted, then not found
+        webTestClient.delete().uri("/patient/2").exchange().expectStatus().isOk();
+        webTestClient.delete().uri("/patient/2").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    void testWritesRecordChanges() {
+        // WHEN
+        // A patient is updated then deleted
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setGiven("Jon");
+        patientDTO.setFamily("Doe");
+        patientDTO.setSex("M");
+        patientDTO.setDob(LocalDate.of(1980, 5, 10));
+        webTestClient.put().uri("/patient/update/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(patientDTO)
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.delete().uri("/patient/1").exchange().expectStatus().isOk();
+
+        // THEN
+        // Both changes are in the outbox, the update with the stored state
+        assertEquals(List.of("UPDATED", "DELETED"),
+                jdbcTemplate.queryForList("SELECT change_type FROM patient_change WHERE patient_id = 1 ORDER BY seq", String.class));
+        assertTrue(jdbcTemplate.queryForObject("SELECT patient FROM patient_change WHERE change_type = 'UPDATED'", String.class)
+                .contains("\"version\":1"));
+    }
+}
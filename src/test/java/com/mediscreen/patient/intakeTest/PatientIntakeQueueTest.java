@@ -0,0 +1,117 @@
+package com.mediscreen.patient.intakeTest;
+
+import com.mediscreen.patient.dto.ImportErrorDTO;
+import com.mediscreen.patient.dto.ImportReportDTO;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.dto.PatientIntakeDTO;
+import com.mediscreen.patient.exception.IntakeNotFoundException;
+import com.mediscreen.patient.exception.IntakeQueueFullException;
+import com.mediscreen.patient.exception.InvalidPatientException;
+import com.mediscreen.patient.intake.PatientIntakeQueue;
+import com.mediscreen.patient.service.IPatientService;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class PatientIntakeQueueTest {
+
+    private IPatientService patientService;
+
+    private PatientIntakeQueue patientIntakeQueue;
+
+    @BeforeEach
+    public void setup() {
+        patientService = mock(IPatientService.class);
+        patientIntakeQueue = new PatientIntakeQueue(patientService, Validation.buildDefaultValidatorFactory().getValidator(),
+                true, 3, 2, Duration.ofSeconds(5), Duration.ofMinutes(1), 1000);
+    }
+
+    private PatientDTO patient(String family) {
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setFamily(family);
+        patientDTO.setGiven("John");
+        patientDTO.setDob(LocalDate.of(1980, 1, 1));
+        patientDTO.setSex("M");
+        return patientDTO;
+    }
+
+    @Test
+    public void testEnqueue_SavedInBatches() {
+        // GIVEN
+        // The import saves the patients, except the second one
+        List<Integer> batchSizes = new ArrayList<>();
+        when(patientService.importPatients(anyList())).thenAnswer(invocation -> {
+            List<PatientDTO> patientDTOs = invocation.getArgument(0);
+            batchSizes.add(patientDTOs.size());
+            List<ImportErrorDTO> errors = new ArrayList<>();
+            for (int i = 0; i < patientDTOs.size(); i++) {
+                if (patientDTOs.get(i).getFamily().equals("Duplicate")) errors.add(new ImportErrorDTO(i + 1, "Duplicate entry"));
+                else patientDTOs.get(i).setId(10 + i);
+            }
+            return new ImportReportDTO(patientDTOs.size(), patientDTOs.size() - errors.size(), errors.size(), errors, 0, 0);
+        });
+
+        // WHEN
+        // Three patients are queued then the application stops
+        PatientIntakeDTO first = patientIntakeQueue.enqueue(patient("Doe"));
+        PatientIntakeDTO second = patientIntakeQueue.enqueue(patient("Duplicate"));
+        PatientIntakeDTO third = patientIntakeQueue.enqueue(patient("Smith"));
+        assertEquals(PatientIntakeDTO.QUEUED, first.getStatus());
+        patientIntakeQueue.start();
+        patientIntakeQueue.stop();
+
+        // THEN
+        // The queue is drained in batches of two, and each token has its outcome
+        assertEquals(List.of(2, 1), batchSizes);
+        assertEquals(PatientIntakeDTO.SAVED, patientIntakeQueue.getStatus(first.getToken()).getStatus());
+        assertEquals(10, patientIntakeQueue.getStatus(first.getToken()).getPatientId());
+        assertEquals(PatientIntakeDTO.FAILED, patientIntakeQueue.getStatus(second.getToken()).getStatus());
+        assertEquals("Duplicate entry", patientIntakeQueue.getStatus(second.getToken()).getError());
+        assertEquals(PatientIntakeDTO.SAVED, patientIntakeQueue.getStatus(third.getToken()).getStatus());
+    }
+
+    @Test
+    public void testEnqueue_QueueFull() {
+        // GIVEN
+        // The queue is full
+        for (int i = 0; i < 3; i++) patientIntakeQueue.enqueue(patient("Doe"));
+
+        // THEN
+        // A new patient is rejected
+        assertThrows(IntakeQueueFullException.class, () -> patientIntakeQueue.enqueue(patient("Smith")));
+    }
+
+    @Test
+    public void testEnqueue_AfterStop() {
+        // GIVEN
+        // The application is stopping
+        patientIntakeQueue.start();
+        patientIntakeQueue.stop();
+
+        // THEN
+        // New patients are rejected
+        assertThrows(IntakeQueueFullException.class, () -> patientIntakeQueue.enqueue(patient("Doe")));
+    }
+
+    @Test
+    public void testEnqueue_InvalidPatient() {
+        // THEN
+        // An invalid patient is rejected before being queued
+        assertThrows(InvalidPatientException.class, () -> patientIntakeQueue.enqueue(new PatientDTO()));
+        verifyNoInteractions(patientService);
+    }
+
+    @Test
+    public void testGetStatus_UnknownToken() {
+        assertThrows(IntakeNotFoundException.class, () -> patientIntakeQueue.getStatus("unknown"));
+    }
+}
@@ -0,0 +1,286 @@
+package com.mediscreen.patient.loadtest;
+
+import com.mediscreen.patient.PatientApplication;
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.service.IPatientService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop load test of the patient endpoints, against the application started on an in-memory H2 database.
+ * <p>
+ * Options are given as --loadtest.name=value: patients (10000), concurrency (200), warmup (10s), duration (30s)
+ * and profiles (default), a comma-separated list of Spring profiles run one after the other on a fresh database,
+ * for instance default,perf. Any other --name=value argument is passed to the application, for instance
+ * --patient.threads.virtual=true, so that runs with different settings can be compared.
+ * <p>
+ * Run with: mvn -Ploadtest test-compile exec:java -Dloadtest.args="--loadtest.profiles=default,perf"
+ */
+public class PatientLoadTest {
+
+    private static final String OPTION_PREFIX = "--loadtest.";
+
+    private static final String DEFAULT_PROFILE = "default";
+
+    private static final String[] FAMILY_NAMES = {"Smith", "Jones", "Taylor", "Brown", "Williams", "Wilson", "Johnson", "Davies", "Robinson", "Wright"};
+
+    private static final String[] GIVEN_NAMES = {"Oliver", "Amelia", "George", "Isla", "Harry", "Ava", "Jack", "Emily", "Jacob", "Sophia"};
+
+    /**
+     * The requested endpoints, with their share of the requests in percent.
+     */
+    private enum Endpoint {
+        BY_ID("GET /patient/{id}", 60),
+        BY_NAME("GET /patient", 20),
+        PAGE("GET /patient/page", 10),
+        QUERY("GET /patient/query", 10);
+
+        private final String label;
+
+        private final int share;
+
+        Endpoint(String label, int share) {
+            this.label = label;
+            this.share = share;
+        }
+
+        private static Endpoint pick(ThreadLocalRandom random) {
+            int draw = random.nextInt(100);
+            for (Endpoint endpoint : values()) {
+                if (draw < endpoint.share) return endpoint;
+                draw -= endpoint.share;
+            }
+            throw new IllegalStateException("Endpoint shares do not add up to 100");
+        }
+
+        private String path(ThreadLocalRandom random, int patients) {
+            int index = random.nextInt(patients);
+            return switch (this) {
+                case BY_ID -> "/patient/" + (1 + index);
+                case BY_NAME -> "/patient?family=" + family(index) + "&given=" + given(index);
+                case PAGE -> "/patient/page?size=50";
+                case QUERY -> "/patient/query?sex=F&dobFrom=" + (1930 + random.nextInt(80)) + "-01-01&fields=family,given,dob&size=50";
+            };
+        }
+    }
+
+    private record Result(String profile, Duration duration, long[][] latencies, long errors) {
+
+        private long requests() {
+            return Arrays.stream(latencies).mapToLong(endpointLatencies -> endpointLatencies.length).sum();
+        }
+
+        private double throughput(long requests) {
+            return requests / (duration.toNanos() / 1e9);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        Map<String, String> applicationArgs = new LinkedHashMap<>();
+        applicationArgs.put("server.port", "0");
+        applicationArgs.put("spring.docker.compose.enabled", "false");
+        applicationArgs.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        applicationArgs.put("spring.datasource.username", "sa");
+        applicationArgs.put("spring.datasource.password", "");
+        applicationArgs.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        applicationArgs.put("spring.jpa.hibernate.ddl-auto", "create");
+        applicationArgs.put("patient.cache.enabled", "false");
+        applicationArgs.put("patient.second-level-cache.enabled", "false");
+        applicationArgs.put("logging.level.root", "WARN");
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) throw new IllegalArgumentException("Expected --name=value but was " + arg);
+
+            if (arg.startsWith(OPTION_PREFIX)) {
+                options.put(arg.substring(OPTION_PREFIX.length(), separator), arg.substring(separator + 1));
+            } else {
+                applicationArgs.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+
+        int patients = Integer.parseInt(options.getOrDefault("patients", "10000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        Duration warmup = Duration.parse("PT" + options.getOrDefault("warmup", "10s"));
+        Duration duration = Duration.parse("PT" + options.getOrDefault("duration", "30s"));
+        String[] profiles = options.getOrDefault("profiles", DEFAULT_PROFILE).split(",");
+
+        // The default profile echoes every SQL statement on the console, so the reports are printed after all the runs
+        List<Result> results = new ArrayList<>(profiles.length);
+        for (int i = 0; i < profiles.length; i++) {
+            Map<String, String> runArgs = new LinkedHashMap<>(applicationArgs);
+            runArgs.put("spring.datasource.url", "jdbc:h2:mem:loadtest" + i + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+            if (!profiles[i].equals(DEFAULT_PROFILE)) runArgs.put("spring.profiles.active", profiles[i]);
+
+            results.add(run(profiles[i], runArgs, patients, concurrency, warmup, duration));
+        }
+
+        System.out.println("Load test: " + patients + " patients, " + concurrency + " clients, " + duration.toSeconds()
+                + "s per profile, settings " + applicationArgs);
+        for (Result result : results) report(result);
+        if (results.size() > 1) compare(results);
+    }
+
+    private static Result run(String profile, Map<String, String> applicationArgs, int patients, int concurrency,
+                              Duration warmup, Duration duration) throws Exception {
+        String[] runArgs = applicationArgs.entrySet().stream()
+                .map(arg -> "--" + arg.getKey() + "=" + arg.getValue())
+                .toArray(String[]::new);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PatientApplication.class).run(runArgs)) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            seed(context.getBean(IPatientService.class), patients);
+
+            drive(port, patients, concurrency, warmup);
+            long[][][] clientLatencies = drive(port, patients, concurrency, duration);
+
+            long[][] latencies = new long[Endpoint.values().length][];
+            for (Endpoint endpoint : Endpoint.values()) {
+                latencies[endpoint.ordinal()] = Arrays.stream(clientLatencies)
+                        .flatMapToLong(client -> Arrays.stream(client[endpoint.ordinal()]))
+                        .sorted()
+                        .toArray();
+            }
+            long errors = Arrays.stream(clientLatencies).mapToLong(client -> client[Endpoint.values().length][0]).sum();
+
+            return new Result(profile, duration, latencies, errors);
+        }
+    }
+
+    private static void seed(IPatientService patientService, int patients) {
+        List<PatientDTO> patientDTOs = new ArrayList<>(patients);
+
+        for (int i = 0; i < patients; i++) {
+            PatientDTO patientDTO = new PatientDTO();
+            patientDTO.setFamily(family(i));
+            patientDTO.setGiven(given(i));
+            patientDTO.setSex(i % 2 == 0 ? "F" : "M");
+            patientDTO.setDob(LocalDate.of(1930, 1, 1).plusDays(i % 30000));
+            patientDTO.setAddress(i + " High Street");
+            patientDTO.setPhone("555-000-" + (i % 10000));
+            patientDTOs.add(patientDTO);
+        }
+
+        patientService.importPatients(patientDTOs);
+    }
+
+    private static String family(int index) {
+        return FAMILY_NAMES[index % FAMILY_NAMES.length] + (index / FAMILY_NAMES.length);
+    }
+
+    private static String given(int index) {
+        return GIVEN_NAMES[(index / 7) % GIVEN_NAMES.length];
+    }
+
+    /**
+     * Run the clients for the given duration, each request picking an endpoint by its share.
+     *
+     * @return for each client, the latencies of each endpoint followed by the error count
+     */
+    private static long[][][] drive(int port, int patients, int concurrency, Duration duration) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<long[][]>> results = new ArrayList<>(concurrency);
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                results.add(clients.submit(() -> {
+                    int endpoints = Endpoint.values().length;
+                    long[][] latencies = new long[endpoints + 1][];
+                    int[] counts = new int[endpoints];
+                    long errors = 0;
+                    for (int e = 0; e < endpoints; e++) latencies[e] = new long[256];
+
+                    while (System.nanoTime() < deadline) {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        Endpoint endpoint = Endpoint.pick(random);
+                        URI uri = URI.create("http://localhost:" + port + endpoint.path(random, patients));
+
+                        long start = System.nanoTime();
+                        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).build(),
+                                HttpResponse.BodyHandlers.ofByteArray());
+                        long latency = System.nanoTime() - start;
+
+                        if (response.statusCode() != 200) errors++;
+                        int e = endpoint.ordinal();
+                        if (counts[e] == latencies[e].length) latencies[e] = Arrays.copyOf(latencies[e], counts[e] * 2);
+                        latencies[e][counts[e]++] = latency;
+                    }
+
+                    for (int e = 0; e < endpoints; e++) latencies[e] = Arrays.copyOf(latencies[e], counts[e]);
+                    latencies[endpoints] = new long[]{errors};
+                    return latencies;
+                }));
+            }
+        }
+
+        return results.stream().map(PatientLoadTest::join).toArray(long[][][]::new);
+    }
+
+    private static void report(Result result) {
+        System.out.printf("Profile %s: %d requests, %d errors, throughput %.0f req/s%n",
+                result.profile(), result.requests(), result.errors(), result.throughput(result.requests()));
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            long[] latencies = result.latencies()[endpoint.ordinal()];
+            System.out.printf("  %-20s %8.0f req/s, latency ms: p50 %.2f, p95 %.2f, p99 %.2f, max %.2f%n",
+                    endpoint.label, result.throughput(latencies.length),
+                    percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99), percentile(latencies, 1.0));
+        }
+    }
+
+    /**
+     * Print the throughput of each profile relative to the first one.
+     */
+    private static void compare(List<Result> results) {
+        Result baseline = results.get(0);
+
+        for (Result result : results.subList(1, results.size())) {
+            StringBuilder line = new StringBuilder(String.format("Throughput of %s relative to %s: overall %.2fx",
+                    result.profile(), baseline.profile(), ratio(result.requests(), baseline.requests())));
+            for (Endpoint endpoint : Endpoint.values()) {
+                line.append(String.format(", %s %.2fx", endpoint.label, ratio(
+                        result.latencies()[endpoint.ordinal()].length, baseline.latencies()[endpoint.ordinal()].length)));
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static double ratio(long requests, long baselineRequests) {
+        return baselineRequests == 0 ? 0 : (double) requests / baselineRequests;
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException("Load test client failed", e);
+        }
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) return 0;
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,76 @@
+package com.mediscreen.patient.loggingTest;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import com.mediscreen.patient.logging.EventSamplingTurboFilter;
+import com.mediscreen.patient.logging.PatientLogEvents;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventSamplingTurboFilterTest {
+
+    private EventSamplingTurboFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        filter = new EventSamplingTurboFilter();
+        filter.setContext(new LoggerContext());
+        filter.setRates("patient.read=3, patient.write=0");
+        filter.start();
+    }
+
+    private FilterReply decide(org.slf4j.Marker marker, Level level) {
+        return filter.decide(marker, null, level, "Patient requested id={}", null, null);
+    }
+
+    @Test
+    public void testDecide_Sampled() {
+        // WHEN
+        // Six read events are logged
+        List<FilterReply> replies = new ArrayList<>();
+        for (int i = 0; i < 6; i++) replies.add(decide(PatientLogEvents.READ, Level.DEBUG));
+
+        // THEN
+        // One in three is kept
+        assertEquals(List.of(FilterReply.NEUTRAL, FilterReply.DENY, FilterReply.DENY,
+                FilterReply.NEUTRAL, FilterReply.DENY, FilterReply.DENY), replies);
+    }
+
+    @Test
+    public void testDecide_Off() {
+        // THEN
+        // Write events are dropped, except warnings and errors
+        assertEquals(FilterReply.DENY, decide(PatientLogEvents.WRITE, Level.INFO));
+        assertEquals(FilterReply.NEUTRAL, decide(PatientLogEvents.WRITE, Level.ERROR));
+    }
+
+    @Test
+    public void testDecide_NotConfigured() {
+        // THEN
+        // Events without a configured marker are left to the logger levels
+        assertEquals(FilterReply.NEUTRAL, decide(PatientLogEvents.BULK, Level.INFO));
+        assertEquals(FilterReply.NEUTRAL, decide(null, Level.INFO));
+    }
+
+    @Test
+    public void testStart_InvalidRate() {
+        // GIVEN
+        // A rate is not a number
+        EventSamplingTurboFilter invalidFilter = new EventSamplingTurboFilter();
+        invalidFilter.setContext(new LoggerContext());
+        invalidFilter.setRates("patient.read=often");
+
+        // WHEN
+        invalidFilter.start();
+
+        // THEN
+        // The rate is ignored
+        assertEquals(FilterReply.NEUTRAL, invalidFilter.decide(PatientLogEvents.READ, null, Level.DEBUG, "", null, null));
+    }
+}
@@ -0,0 +1,99 @@
+package com.mediscreen.patient.metricsTest;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.exception.PatientNotFoundException;
+import com.mediscreen.patient.metrics.PatientServiceMetrics;
+import com.mediscreen.patient.service.IPatientService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class PatientServiceMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private IPatientService patientService;
+
+    private IPatientService timedPatientService;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        patientService = mock(IPatientService.class);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(patientService);
+        proxyFactory.addAspect(new PatientServiceMetrics(meterRegistry));
+        timedPatientService = proxyFactory.getProxy();
+    }
+
+    private long count(String method, String outcome) {
+        Timer timer = meterRegistry.find(PatientServiceMetrics.TIMER_NAME)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    public void testSuccess() {
+        // GIVEN
+        // The patient exists
+        when(patientService.getPatientById(1)).thenReturn(new PatientDTO());
+
+        // WHEN
+        timedPatientService.getPatientById(1);
+
+        // THEN
+        // The call is timed as a success
+        assertEquals(1, count("getPatientById", "success"));
+    }
+
+    @Test
+    public void testNotFound() {
+        // GIVEN
+        // The patient doesn't exist
+        when(patientService.getPatientById(1)).thenThrow(new PatientNotFoundException("Patient not found"));
+
+        // WHEN
+        assertThrows(PatientNotFoundException.class, () -> timedPatientService.getPatientById(1));
+
+        // THEN
+        // The call is timed as not found
+        assertEquals(1, count("getPatientById", "not_found"));
+        assertEquals(0, count("getPatientById", "success"));
+    }
+
+    @Test
+    public void testFailure() {
+        // GIVEN
+        // The patient can't be added
+        when(patientService.addPatient(any())).thenReturn(false);
+
+        // WHEN
+        timedPatientService.addPatient(new PatientDTO());
+
+        // THEN
+        // The call is timed as a failure
+        assertEquals(1, count("addPatient", "failure"));
+    }
+
+    @Test
+    public void testError() {
+        // GIVEN
+        // The database is down
+        when(patientService.getAllPatients()).thenThrow(new IllegalStateException("Connection refused"));
+
+        // WHEN
+        assertThrows(IllegalStateException.class, () -> timedPatientService.getAllPatients());
+
+        // THEN
+        // The call is timed as an error
+        assertEquals(1, count("getAllPatients", "error"));
+    }
+}
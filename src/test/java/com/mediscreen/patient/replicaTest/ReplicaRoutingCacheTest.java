@@ -0,0 +1,107 @@
+package com.mediscreen.patient.replicaTest;
+
+import com.mediscreen.patient.cache.PatientCache;
+import com.mediscreen.patient.config.ReadYourWritesFilter;
+import com.mediscreen.patient.model.Patient;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.Cookie;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Read replica routing with the patient cache and the Hibernate caches on, on the databases of ReplicaRoutingTest.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.sql.init.mode=never",
+        "patient.replica.enabled=true",
+        "patient.replica.urls=" + ReplicaRoutingTest.REPLICA_URL,
+        "patient.cache.enabled=true",
+        "patient.second-level-cache.enabled=true"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingCacheTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PatientCache patientCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    static void createDatabases() throws IOException {
+        ReplicaRoutingTest.resetDatabases();
+    }
+
+    @BeforeEach
+    public void setupData() throws IOException {
+        ReplicaRoutingTest.resetDatabases();
+        patientCache.clear();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    @Test
+    void testReadYourWrites() throws Exception {
+        // GIVEN
+        // A client that just updated a patient, not yet on the replica
+        Cookie cookie = mvc.perform(put("/patient/update/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"family\": \"Doe\", \"given\": \"John\", \"sex\": \"M\", \"dob\": \"1980-05-10\", \"phone\": \"555-999-9999\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // WHEN
+        // Another client reads the list from the replica, then the patient
+        mvc.perform(get("/patient/all"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].phone").value("555-123-4567"));
+        mvc.perform(get("/patient/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phone").value("555-999-9999"));
+
+        // THEN
+        // The writer still reads its update, the caches were not filled from the replica
+        mvc.perform(get("/patient/1").cookie(cookie))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phone").value("555-999-9999"));
+    }
+
+    @Test
+    void testReplicaReadsDoNotFillSecondLevelCache() throws Exception {
+        // WHEN
+        // The list is read from the replica
+        mvc.perform(get("/patient/all")).andExpect(status().isOk());
+
+        // THEN
+        // Its patients are not cached, the ones read from the primary are
+        org.hibernate.Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        assertFalse(cache.containsEntity(Patient.class, 1));
+
+        mvc.perform(get("/patient/1")).andExpect(status().isOk());
+        assertTrue(cache.containsEntity(Patient.class, 1));
+    }
+}
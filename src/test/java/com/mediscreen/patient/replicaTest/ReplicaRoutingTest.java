@@ -0,0 +1,195 @@
+package com.mediscreen.patient.replicaTest;
+
+import com.mediscreen.patient.config.ReadYourWritesFilter;
+import com.mediscreen.patient.config.ReplicaRoutingDataSource;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Read replica routing against two H2 databases, a primary and a replica that only catches up when told to.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.sql.init.mode=never",
+        "patient.replica.enabled=true",
+        "patient.replica.urls=" + ReplicaRoutingTest.REPLICA_URL,
+        "patient.cache.enabled=false",
+        "patient.second-level-cache.enabled=false"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:replica_test_primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica_test_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static final DataSource primary = new DriverManagerDataSource(PRIMARY_URL, "sa", "");
+
+    private static final DataSource replica = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+
+    @Autowired
+    private MockMvc mvc;
+
+    /**
+     * Both databases need their tables before the application starts, it reads the replica when it is ready.
+     */
+    @BeforeAll
+    static void createDatabases() throws IOException {
+        resetDatabases();
+    }
+
+    @BeforeEach
+    public void setupData() throws IOException {
+        resetDatabases();
+    }
+
+    /**
+     * Load the test schema, without its MySQL database statements, and data in both databases.
+     */
+    static void resetDatabases() throws IOException {
+        String schema = new ClassPathResource("1_schema_test.sql").getContentAsString(StandardCharsets.UTF_8).lines()
+                .filter(line -> !line.startsWith("CREATE DATABASE") && !line.startsWith("USE "))
+                .collect(Collectors.joining("\n"));
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ByteArrayResource(schema.getBytes(StandardCharsets.UTF_8)), new ClassPathResource("2_data_test.sql"));
+        populator.execute(primary);
+        populator.execute(replica);
+    }
+
+    @Test
+    void testReadsGoToReplica() throws Exception {
+        // GIVEN
+        // A change of the primary not yet on the replica
+        new JdbcTemplate(primary).update("UPDATE patient SET family_name = 'Primary' WHERE id = 1");
+
+        // THEN
+        // Patients are read from the replica
+        mvc.perform(get("/patient/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.family").value("Doe"));
+    }
+
+    @Test
+    void testWritesGoToPrimary() throws Exception {
+        // WHEN
+        // I add a patient
+        mvc.perform(post("/patient/add")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("family", "Smith")
+                        .param("given", "John")
+                        .param("sex", "M")
+                        .param("dob", "2000-10-10"))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE_NAME));
+
+        // THEN
+        // It is only written to the primary
+        assertEquals(6, new JdbcTemplate(primary).queryForObject("SELECT count(*) FROM patient", Integer.class));
+        assertEquals(5, new JdbcTemplate(replica).queryForObject("SELECT count(*) FROM patient", Integer.class));
+    }
+
+    @Test
+    void testReadYourWrites() throws Exception {
+        // GIVEN
+        // A client that just added a patient
+        Cookie cookie = mvc.perform(post("/patient/add")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("family", "Smith")
+                        .param("given", "John")
+                        .param("sex", "M")
+                        .param("dob", "2000-10-10"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // THEN
+        // That client reads the patient from the primary, the others read from the replica
+        mvc.perform(get("/patient?family=Smith&given=John").cookie(cookie))
+                .andExpect(status().isOk());
+        mvc.perform(get("/patient?family=Smith&given=John"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testReadYourWrites_NothingWritten() throws Exception {
+        // THEN
+        // A batch lookup and a rejected update don't pin the client to the primary
+        mvc.perform(post("/patient/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[1, 2]"))
+                .andExpect(status().isOk())
+                .andExpect(cookie().doesNotExist(ReadYourWritesFilter.COOKIE_NAME));
+        mvc.perform(put("/patient/update/99")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"family\": \"Doe\", \"given\": \"John\", \"sex\": \"M\", \"dob\": \"1980-05-10\"}"))
+                .andExpect(status().isNotFound())
+                .andExpect(cookie().doesNotExist(ReadYourWritesFilter.COOKIE_NAME));
+    }
+
+    @Test
+    void testRoundRobinReplicas() throws SQLException {
+        // GIVEN
+        // Two replicas
+        DataSource secondReplica = new DriverManagerDataSource("jdbc:h2:mem:replica_test_second", "sa", "");
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica, secondReplica),
+                ReplicaRoutingDataSource.Selection.ROUND_ROBIN);
+        routing.afterPropertiesSet();
+
+        // THEN
+        // Read-only transactions go to each replica in turn, unless pinned to the primary
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            assertEquals("jdbc:h2:mem:replica_test_replica", url(routing));
+            assertEquals("jdbc:h2:mem:replica_test_second", url(routing));
+            assertEquals("jdbc:h2:mem:replica_test_replica", url(routing));
+
+            ReplicaRoutingDataSource.setPinnedToPrimary(true);
+            assertEquals("jdbc:h2:mem:replica_test_primary", url(routing));
+        } finally {
+            ReplicaRoutingDataSource.setPinnedToPrimary(false);
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        // Other transactions go to the primary
+        assertEquals("jdbc:h2:mem:replica_test_primary", url(routing));
+    }
+
+    private static String url(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.mediscreen.patient.searchTest;
+
+import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import com.mediscreen.patient.search.PatientSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatientSearchIndexTest {
+
+    private PatientSearchIndex patientSearchIndex;
+
+    @BeforeEach
+    public void setup() {
+        patientSearchIndex = new PatientSearchIndex();
+        patientSearchIndex.put(patient(1, "Doe", "John"));
+        patientSearchIndex.put(patient(2, "Dobson", "Jane"));
+        patientSearchIndex.put(patient(3, "Lefèvre-Durand", "Zoé"));
+    }
+
+    private PatientDTO patient(Integer id, String family, String given) {
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setId(id);
+        patientDTO.setFamily(family);
+        patientDTO.setGiven(given);
+        return patientDTO;
+    }
+
+    private List<Integer> ids(List<PatientDTO> patientDTOs) {
+        return patientDTOs.stream().map(PatientDTO::getId).toList();
+    }
+
+    @Test
+    public void testSearch_Prefix() {
+        // THEN
+        // The patients with a name starting with the query are found, sorted by name
+        assertEquals(List.of(2, 1), ids(patientSearchIndex.search("do", 10)));
+        assertEquals(List.of(2, 1), ids(patientSearchIndex.search("j", 10)));
+    }
+
+    @Test
+    public void testSearch_ExactWordFirst() {
+        // GIVEN
+        // There is a patient whose name sorts first but only starts with the query
+        patientSearchIndex.put(patient(4, "Adams", "Johnny"));
+
+        // THEN
+        // An exact word match ranks before a prefix match
+        assertEquals(List.of(1, 4), ids(patientSearchIndex.search("john", 10)));
+        assertEquals(List.of(1), ids(patientSearchIndex.search("john", 1)));
+    }
+
+    @Test
+    public void testSearch_SeveralWords() {
+        // THEN
+        // Every word of the query must match, whatever the case, accents and compound names
+        assertEquals(List.of(3), ids(patientSearchIndex.search("DURAND zoe", 10)));
+        assertEquals(List.of(1), ids(patientSearchIndex.search("do jo", 10)));
+        assertTrue(patientSearchIndex.search("doe zoe", 10).isEmpty());
+    }
+
+    @Test
+    public void testOnPatientChanged() {
+        // WHEN
+        // A patient is renamed and another one deleted
+        patientSearchIndex.onPatientChanged(PatientChangedEvent.updated(patient(1, "Smith", "John")));
+        patientSearchIndex.onPatientChanged(PatientChangedEvent.deleted(2));
+
+        // THEN
+        // The index follows the changes
+        assertTrue(patientSearchIndex.search("do", 10).isEmpty());
+        assertEquals(List.of(1), ids(patientSearchIndex.search("smi", 10)));
+        assertEquals(2, patientSearchIndex.size());
+    }
+}
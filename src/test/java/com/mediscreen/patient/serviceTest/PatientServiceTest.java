@@ -1,20 +1,66 @@
 package com.mediscreen.patient.serviceTest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediscreen.patient.cache.PatientCache;
+import com.mediscreen.patient.dto.ImportReportDTO;
+import com.mediscreen.patient.dto.PatientBatchDTO;
 import com.mediscreen.patient.dto.PatientDTO;
+import com.mediscreen.patient.dto.PatientFilterDTO;
+import com.mediscreen.patient.dto.PatientPageDTO;
+import com.mediscreen.patient.dto.PatientQueryPageDTO;
+import com.mediscreen.patient.dto.PatientStatsDTO;
+import com.mediscreen.patient.event.PatientChangedEvent;
+import com.mediscreen.patient.exception.InvalidBatchException;
+import com.mediscreen.patient.exception.InvalidCursorException;
+import com.mediscreen.patient.exception.InvalidPatientException;
+import com.mediscreen.patient.exception.InvalidQueryException;
 import com.mediscreen.patient.exception.PatientNotFoundException;
+import com.mediscreen.patient.exception.PatientVersionConflictException;
 import com.mediscreen.patient.model.Patient;
+import com.mediscreen.patient.repository.PatientBatchRepository;
+import com.mediscreen.patient.repository.PatientDobCount;
 import com.mediscreen.patient.repository.PatientRepository;
+import com.mediscreen.patient.search.PatientSearchIndex;
+import com.mediscreen.patient.service.PatientCursor;
 import com.mediscreen.patient.service.PatientService;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -22,9 +68,57 @@ public class PatientServiceTest {
     @Mock
     private PatientRepository patientRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PatientCache patientCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PatientSearchIndex patientSearchIndex;
+
+    @Mock
+    private PatientBatchRepository patientBatchRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @InjectMocks
     private PatientService patientService;
 
+    @BeforeEach
+    public void setup() {
+        ReflectionTestUtils.setField(patientService, "maxPageSize", 500);
+        ReflectionTestUtils.setField(patientService, "importBatchSize", 2);
+        ReflectionTestUtils.setField(patientService, "maxSearchResults", 100);
+        ReflectionTestUtils.setField(patientService, "batchMaxIds", 5);
+        ReflectionTestUtils.setField(patientService, "batchChunkSize", 2);
+        ReflectionTestUtils.setField(patientService, "ageBands", new int[]{18, 30, 40});
+        ReflectionTestUtils.setField(patientService, "statsMaxAge", Duration.ofMinutes(1));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    private PatientDTO validPatientDTO(String family) {
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setFamily(family);
+        patientDTO.setGiven("John");
+        patientDTO.setSex("M");
+        patientDTO.setDob(LocalDate.of(2000, 10, 10));
+        return patientDTO;
+    }
+
     @Test
     public void testGetPatientById() {
         // GIVEN
@@ -49,6 +143,25 @@ public class PatientServiceTest {
         assertEquals("Doe", result.getFamily());
     }
 
+    @Test
+    public void testGetPatientById_Cached() {
+        // GIVEN
+        // The patient is already cached
+        Integer patientId = 1;
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setId(patientId);
+
+        // WHEN
+        // I want the info about a patient
+        when(patientCache.getById(patientId)).thenReturn(patientDTO);
+        PatientDTO result = patientService.getPatientById(patientId);
+
+        // THEN
+        // It should return the cached patient without querying the db
+        assertSame(patientDTO, result);
+        verify(patientRepository, never()).findById(patientId);
+    }
+
     @Test
     public void testGetPatientById_NoExistingPatient() {
         // GIVEN
@@ -67,6 +180,39 @@ public class PatientServiceTest {
         });
     }
 
+    @Test
+    public void testGetPatientByName() {
+        // GIVEN
+        // There is a patient with an accented name in db
+        Patient patient = new Patient();
+        patient.setId(1);
+        patient.setFamily("Lefèvre");
+        patient.setGiven("Zoé");
+
+        // WHEN
+        // I want the info about the patient without the accents nor the case
+        when(patientRepository.findFirstByNameKeyOrderByIdAsc("lefevre|zoe")).thenReturn(Optional.of(patient));
+        PatientDTO result = patientService.getPatientByName("LEFEVRE", " zoe ");
+
+        // THEN
+        // It should return the patient info
+        assertEquals(1, result.getId());
+        assertEquals("Lefèvre", result.getFamily());
+    }
+
+    @Test
+    public void testGetPatientByName_NoExistingPatient() {
+        // WHEN
+        // I want the info about a patient that is not in db
+        when(patientRepository.findFirstByNameKeyOrderByIdAsc("doe|john")).thenReturn(Optional.empty());
+
+        // THEN
+        // It should throw an exception
+        assertThrows(PatientNotFoundException.class, () -> {
+            patientService.getPatientByName("Doe", "John");
+        });
+    }
+
     @Test
     public void testAddPatient() {
         // GIVEN
@@ -83,7 +229,7 @@ public class PatientServiceTest {
 
         // WHEN
         // I add a new patient
-        when(patientRepository.save(patient)).thenReturn(new Patient());
+        when(patientRepository.save(any(Patient.class))).thenReturn(patient);
         boolean result = patientService.addPatient(patientDTO);
 
         // THEN
@@ -99,18 +245,45 @@ public class PatientServiceTest {
         PatientDTO patientDTO = new PatientDTO();
         patientDTO.setGiven("John");
         patientDTO.setFamily("Doe");
-        Optional<Patient> optionalPatient = Optional.of(new Patient());
-        Patient patient = new Patient();
 
         // WHEN
         // I update a patient by its ID
-        when(patientRepository.findById(patientId)).thenReturn(optionalPatient);
-        when(patientRepository.save(patient)).thenReturn(new Patient());
+        when(patientRepository.updateById(any(Patient.class), isNull())).thenReturn(1);
+        when(patientRepository.findVersionById(patientId)).thenReturn(4);
         boolean result = patientService.updatePatient(patientId, patientDTO);
 
         // THEN
-        // It should be updated
+        // It should be updated in one statement, with its name key, and the stored state published
         assertTrue(result);
+        verify(patientRepository, never()).findById(any());
+        verify(patientRepository).updateById(argThat(patient -> patientId.equals(patient.getId())
+                && "doe|john".equals(patient.getNameKey())), isNull());
+        verify(eventPublisher).publishEvent(argThat((PatientChangedEvent event) -> event.getType() == PatientChangedEvent.Type.UPDATED
+                && patientId.equals(event.getPatient().getId())
+                && Integer.valueOf(4).equals(event.getPatient().getVersion())
+                && "Doe".equals(event.getPatient().getFamily())));
+    }
+
+    @Test
+    public void testUpdatePatient_WithVersion() {
+        // GIVEN
+        // I send the new info with the version I read
+        Integer patientId = 1;
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setGiven("John");
+        patientDTO.setFamily("Doe");
+        patientDTO.setVersion(3);
+
+        // WHEN
+        // I update the patient from that version
+        when(patientRepository.updateById(any(Patient.class), eq(3))).thenReturn(1);
+        patientService.updatePatient(patientId, patientDTO);
+
+        // THEN
+        // The next version is published without reading it back
+        verify(patientRepository, never()).findVersionById(any());
+        verify(eventPublisher).publishEvent(argThat((PatientChangedEvent event) ->
+                Integer.valueOf(4).equals(event.getPatient().getVersion())));
     }
 
     @Test
@@ -121,11 +294,10 @@ public class PatientServiceTest {
         PatientDTO patientDTO = new PatientDTO();
         patientDTO.setGiven("John");
         patientDTO.setGiven("Doe");
-        Optional<Patient> optionalPatient = Optional.empty();
 
         // WHEN
         // I update a patient by its ID
-        when(patientRepository.findById(patientId)).thenReturn(optionalPatient);
+        when(patientRepository.updateById(any(Patient.class), isNull())).thenReturn(0);
 
         // THEN
         // It shouldn't be updated and I get an error
@@ -134,21 +306,139 @@ public class PatientServiceTest {
         });
     }
 
+    @Test
+    public void testUpdatePatient_VersionConflict() {
+        // GIVEN
+        // The patient was updated since the version I read
+        Integer patientId = 1;
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setGiven("John");
+        patientDTO.setFamily("Doe");
+        patientDTO.setVersion(3);
+
+        // WHEN
+        // I update the patient from that version
+        when(patientRepository.updateById(any(Patient.class), eq(3))).thenReturn(0);
+        when(patientRepository.existsById(patientId)).thenReturn(true);
+
+        // THEN
+        // It shouldn't be updated and I get a conflict
+        assertThrows(PatientVersionConflictException.class, () -> {
+            patientService.updatePatient(patientId, patientDTO);
+        });
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    private Patient storedPatient() {
+        return new Patient(1, "Doe", "John", "M", LocalDate.of(1980, 5, 10), "1 Main St", "555-000-0000", "doe|john", 2, null);
+    }
+
+    @Test
+    public void testPatchPatient() throws Exception {
+        // GIVEN
+        // There is a patient in db and I only send its new phone
+        Patient patient = storedPatient();
+        when(entityManager.find(eq(Patient.class), eq(1), anyMap())).thenReturn(patient);
+        doAnswer(invocation -> {
+            patient.setVersion(patient.getVersion() + 1);
+            return null;
+        }).when(patientRepository).flush();
+
+        // WHEN
+        // I patch the patient
+        PatientDTO result = patientService.patchPatient(1, objectMapper.readTree("{\"phone\": \"555-999-9999\"}"));
+
+        // THEN
+        // Only the phone is changed and the change is published
+        assertEquals("555-999-9999", patient.getPhone());
+        assertEquals("Doe", patient.getFamily());
+        assertEquals("1 Main St", patient.getAddress());
+        assertEquals("555-999-9999", result.getPhone());
+        verify(patientRepository).flush();
+        verify(eventPublisher).publishEvent(any(PatientChangedEvent.class));
+    }
+
+    @Test
+    public void testPatchPatient_InvalidData() throws Exception {
+        // GIVEN
+        // There is a patient in db
+        when(entityManager.find(eq(Patient.class), eq(1), anyMap())).thenReturn(storedPatient());
+
+        // THEN
+        // A patch clearing a mandatory field or with an unknown field is rejected
+        assertThrows(InvalidPatientException.class, () -> patientService.patchPatient(1, objectMapper.readTree("{\"family\": \"\"}")));
+        assertThrows(InvalidPatientException.class, () -> patientService.patchPatient(1, objectMapper.readTree("{\"nickname\": \"Jo\"}")));
+        verify(patientRepository, never()).flush();
+    }
+
+    @Test
+    public void testPatchPatient_VersionConflict() throws Exception {
+        // GIVEN
+        // The patient is at version 2
+        when(entityManager.find(eq(Patient.class), eq(1), anyMap())).thenReturn(storedPatient());
+
+        // THEN
+        // A patch from version 1 is rejected
+        assertThrows(PatientVersionConflictException.class,
+                () -> patientService.patchPatient(1, objectMapper.readTree("{\"phone\": \"555\", \"version\": 1}")));
+    }
+
+    @Test
+    public void testPatchPatient_InvalidVersion() throws Exception {
+        // GIVEN
+        // The patient is at version 2
+        when(entityManager.find(eq(Patient.class), eq(1), anyMap())).thenReturn(storedPatient());
+
+        // THEN
+        // A version that is not an integer is rejected as invalid, not as a conflict
+        assertThrows(InvalidPatientException.class,
+                () -> patientService.patchPatient(1, objectMapper.readTree("{\"phone\": \"555\", \"version\": \"2\"}")));
+        assertThrows(InvalidPatientException.class,
+                () -> patientService.patchPatient(1, objectMapper.readTree("{\"phone\": \"555\", \"version\": 2.5}")));
+        verify(patientRepository, never()).flush();
+    }
+
+    @Test
+    public void testPatchPatient_NoChange() throws Exception {
+        // GIVEN
+        // The patient already has this phone
+        when(entityManager.find(eq(Patient.class), eq(1), anyMap())).thenReturn(storedPatient());
+
+        // WHEN
+        // I patch the patient and nothing is written
+        patientService.patchPatient(1, objectMapper.readTree("{\"phone\": \"555-000-0000\"}"));
+
+        // THEN
+        // No change is published
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void testPatchPatient_NotFound() throws Exception {
+        // GIVEN
+        // There is no patient in the db
+        when(entityManager.find(eq(Patient.class), eq(1), anyMap())).thenReturn(null);
+
+        // THEN
+        assertThrows(PatientNotFoundException.class, () -> patientService.patchPatient(1, objectMapper.readTree("{}")));
+    }
+
     @Test
     public void testDeletePatient() {
         // GIVEN
         // There are patient in db
         Integer patientId = 1;
-        Optional<Patient> optionalPatient = Optional.of(new Patient());
 
         // WHEN
         // I delete a patient by its ID
-        when(patientRepository.findById(patientId)).thenReturn(optionalPatient);
+        when(patientRepository.deletePatientById(patientId)).thenReturn(1);
         boolean result = patientService.deletePatient(patientId);
 
         // THEN
-        // It should be deleted
+        // It should be deleted in one statement and the change published
         assertTrue(result);
+        verify(patientRepository, never()).findById(any());
+        verify(eventPublisher).publishEvent(any(PatientChangedEvent.class));
     }
 
     @Test
@@ -156,11 +446,10 @@ public class PatientServiceTest {
         // GIVEN
         // There is no patient in the db
         Integer patientId = 1;
-        Optional<Patient> optionalPatient = Optional.empty();
 
         // WHEN
         // I delete a patient by its ID
-        when(patientRepository.findById(patientId)).thenReturn(optionalPatient);
+        when(patientRepository.deletePatientById(patientId)).thenReturn(0);
 
         // THEN
         // It shouldn't be deleted
@@ -169,4 +458,253 @@ public class PatientServiceTest {
         });
     }
 
+    @Test
+    public void testGetAllPatientsVersion() {
+        // GIVEN
+        // The patients were changed by 7 transactions
+        when(patientRepository.findTableVersion()).thenReturn(7L);
+
+        // THEN
+        // The version is the table version, read without the patients
+        assertEquals("7", patientService.getAllPatientsVersion());
+        verify(patientRepository, never()).findAll();
+    }
+
+    @Test
+    public void testGetAllPatientsIfModified() {
+        // GIVEN
+        // There are 5 patients in db
+        when(patientRepository.findTableVersion()).thenReturn(5L);
+        when(patientRepository.findAll()).thenReturn(List.of(storedPatient()));
+
+        // THEN
+        // The caller with the current version doesn't read the patients, the others do
+        assertNull(patientService.getAllPatientsIfModified("5"::equals));
+        verify(patientRepository, never()).findAll();
+        assertEquals(1, patientService.getAllPatientsIfModified("4"::equals).size());
+    }
+
+    @Test
+    public void testGetPatientsByIds() {
+        // GIVEN
+        // Patient 2 is cached, patients 1, 3 and 4 are in db and patient 5 doesn't exist
+        PatientDTO cachedPatient = new PatientDTO();
+        cachedPatient.setId(2);
+        when(patientCache.getById(2)).thenReturn(cachedPatient);
+        Patient patient1 = new Patient();
+        patient1.setId(1);
+        Patient patient3 = new Patient();
+        patient3.setId(3);
+        Patient patient4 = new Patient();
+        patient4.setId(4);
+        when(patientRepository.findAllById(List.of(4, 1))).thenReturn(List.of(patient1, patient4));
+        when(patientRepository.findAllById(List.of(3, 5))).thenReturn(List.of(patient3));
+
+        // WHEN
+        // I get the patients by ids
+        PatientBatchDTO result = patientService.getPatientsByIds(Arrays.asList(4, 2, 1, 3, null, 2, 5));
+
+        // THEN
+        // The uncached ones are read in chunks, in the requested order, and the missing id is reported
+        assertEquals(List.of(4, 2, 1, 3), result.getPatients().stream().map(PatientDTO::getId).toList());
+        assertEquals(List.of(5), result.getMissingIds());
+        verify(patientRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testGetPatientsByIds_TooManyIds() {
+        // THEN
+        // More ids than allowed are rejected before any query
+        assertThrows(InvalidBatchException.class, () -> patientService.getPatientsByIds(List.of(1, 2, 3, 4, 5, 6)));
+        verify(patientRepository, never()).findAllById(any());
+    }
+
+    @Test
+    public void testGetPatientPage() {
+        // GIVEN
+        // There are more patients in db than the page size
+        List<Patient> patients = new ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            Patient patient = new Patient();
+            patient.setId(id);
+            patients.add(patient);
+        }
+
+        // WHEN
+        // I request the first page of 2 patients
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 3))).thenReturn(patients);
+        PatientPageDTO result = patientService.getPatientPage(null, 2);
+
+        // THEN
+        // It should return 2 patients and a cursor after the second one
+        assertEquals(2, result.getPatients().size());
+        assertEquals(2, PatientCursor.decode(result.getNextCursor()));
+    }
+
+    @Test
+    public void testGetPatientPage_LastPage() {
+        // GIVEN
+        // There is only one patient after the cursor
+        Patient patient = new Patient();
+        patient.setId(3);
+
+        // WHEN
+        // I request the page after the second patient
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(2, PageRequest.of(0, 3))).thenReturn(List.of(patient));
+        PatientPageDTO result = patientService.getPatientPage(PatientCursor.encode(2), 2);
+
+        // THEN
+        // It should return the last patient without a next cursor
+        assertEquals(1, result.getPatients().size());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    public void testGetPatientPage_InvalidCursor() {
+        // THEN
+        // It should throw an exception
+        assertThrows(InvalidCursorException.class, () -> {
+            patientService.getPatientPage("not-a-cursor", 2);
+        });
+    }
+
+    @Test
+    public void testExportPatients() {
+        // GIVEN
+        // There are patients in db
+        Patient patient = new Patient();
+        patient.setId(1);
+        patient.setFamily("Doe");
+        List<PatientDTO> exported = new ArrayList<>();
+
+        // WHEN
+        // I export all patients
+        when(patientRepository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(patient));
+        long count = patientService.exportPatients(exported::add);
+
+        // THEN
+        // Each patient should be sent to the consumer and detached
+        assertEquals(1, count);
+        assertEquals("Doe", exported.get(0).getFamily());
+        verify(entityManager).detach(patient);
+    }
+
+    @Test
+    public void testImportPatients() {
+        // GIVEN
+        // There are 3 valid patients and an invalid one to import
+        PatientDTO invalidPatientDTO = new PatientDTO();
+        List<PatientDTO> patientDTOs = List.of(validPatientDTO("Smith"), invalidPatientDTO, validPatientDTO("Doe"), validPatientDTO("Brown"));
+
+        // WHEN
+        // I import them in batches of 2
+        when(patientBatchRepository.insertAll(any())).thenReturn(List.of(10, 11), List.of(12));
+        ImportReportDTO result = patientService.importPatients(patientDTOs);
+
+        // THEN
+        // The valid patients are imported and the invalid row is reported
+        assertEquals(4, result.getReceived());
+        assertEquals(3, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertEquals(12, patientDTOs.get(3).getId());
+    }
+
+    @Test
+    public void testImportPatients_FailingBatch() {
+        // GIVEN
+        // There is a batch with a patient the db rejects
+        List<PatientDTO> patientDTOs = List.of(validPatientDTO("Smith"), validPatientDTO("Doe"));
+
+        // WHEN
+        // I import them, the batch fails then each row is retried alone
+        when(patientBatchRepository.insertAll(any()))
+                .thenThrow(new DataIntegrityViolationException("batch"))
+                .thenReturn(List.of(10))
+                .thenThrow(new DataIntegrityViolationException("row"));
+        ImportReportDTO result = patientService.importPatients(patientDTOs);
+
+        // THEN
+        // Only the failing row is reported
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getRow());
+    }
+
+    @Test
+    public void testSearchPatients() {
+        // WHEN
+        // I search patients with a limit above the maximum
+        when(patientSearchIndex.search("do", 100)).thenReturn(List.of(new PatientDTO()));
+        List<PatientDTO> result = patientService.searchPatients("do", 1000);
+
+        // THEN
+        // The limit is capped to the maximum
+        assertEquals(1, result.size());
+    }
+
+
+    private PatientDobCount dobCount(String sex, LocalDate dob, long count) {
+        return new PatientDobCount() {
+            public String getSex() { return sex; }
+            public LocalDate getDob() { return dob; }
+            public long getCount() { return count; }
+        };
+    }
+
+    @Test
+    public void testGetPatientStats() {
+        // GIVEN
+        // The patients are counted by sex and date of birth in db
+        LocalDate today = LocalDate.now();
+        when(patientRepository.countBySexAndDob()).thenReturn(List.of(
+                dobCount("F", today.minusYears(10), 2),
+                dobCount("M", today.minusYears(18), 1),
+                dobCount("F", today.minusYears(18).plusDays(1), 3),
+                dobCount("M", today.minusYears(65), 4)));
+
+        // WHEN
+        // I request the statistics twice
+        PatientStatsDTO stats = patientService.getPatientStats();
+        patientService.getPatientStats();
+
+        // THEN
+        // The counts are summed by sex and age band, and the db is only queried once
+        assertEquals(10, stats.getTotal());
+        assertEquals(Map.of("F", 5L, "M", 5L), stats.getBySex());
+        assertEquals(List.of("0-17", "18-29", "30-39", "40+"), new ArrayList<>(stats.getByAgeBand().keySet()));
+        assertEquals(5, stats.getByAgeBand().get("0-17"));
+        assertEquals(1, stats.getByAgeBand().get("18-29"));
+        assertEquals(0, stats.getByAgeBand().get("30-39"));
+        assertEquals(4, stats.getByAgeBand().get("40+"));
+        verify(patientRepository, times(1)).countBySexAndDob();
+    }
+
+    @Test
+    public void testQueryPatients() {
+        // GIVEN
+        // There are more matching patients than the page size
+        PatientFilterDTO filter = new PatientFilterDTO("F", null, null, null, null);
+        when(patientRepository.findFieldsAfterId(any(), eq(List.of("id", "family")), eq(0), eq(3)))
+                .thenReturn(List.of(Map.of("id", 2, "family", "Johnson"), Map.of("id", 4, "family", "Brown"),
+                        Map.of("id", 5, "family", "Jones")));
+
+        // WHEN
+        // I query a page of two family names
+        PatientQueryPageDTO page = patientService.queryPatients(filter, List.of("family"), null, 2);
+
+        // THEN
+        // I get the two first patients and a cursor after the second
+        assertEquals(2, page.getPatients().size());
+        assertEquals(4, PatientCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    public void testQueryPatients_UnknownField() {
+        // THEN
+        // Fields that are not patient fields are rejected
+        assertThrows(InvalidQueryException.class, () -> patientService.queryPatients(new PatientFilterDTO(),
+                List.of("nameKey"), null, 10));
+        verify(patientRepository, never()).findFieldsAfterId(any(), any(), anyInt(), anyInt());
+    }
 }
@@ -1,14 +1,14 @@
-INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('1', 'Doe', 'John', 'M', '1980-05-10', '123 Main Street', '555-123-4567');
+INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('1', 'Doe', 'John', 'M', '1980-05-10', '123 Main Street', '555-123-4567', 'doe|john');
 
-INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('2', 'Johnson', 'Emilia', 'F', '1992-02-15', '456 Elm Avenue', '555-987-6543');
+INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('2', 'Johnson', 'Emilia', 'F', '1992-02-15', '456 Elm Avenue', '555-987-6543', 'johnson|emilia');
 
-INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('3', 'Williams', 'David', 'M', '1975-09-20', '789 Oak Drive', '555-456-7890');
+INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('3', 'Williams', 'David', 'M', '1975-09-20', '789 Oak Drive', '555-456-7890', 'williams|david');
 
-INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('4', 'Brown', 'Olivia', 'F', '1988-07-05', '321 Maple Lane', '555-789-1234');
+INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('4', 'Brown', 'Olivia', 'F', '1988-07-05', '321 Maple Lane', '555-789-1234', 'brown|olivia');
 
-INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone)
-VALUES ('5', 'Jones', 'Sophia', 'F', '1995-01-30', '567 Pine Road', '555-234-5678');
\ No newline at end of file
+INSERT INTO patient (id, family_name, given_name, sex, date_of_birth, address, phone, name_key)
+VALUES ('5', 'Jones', 'Sophia', 'F', '1995-01-30', '567 Pine Road', '555-234-5678', 'jones|sophia');
\ No newline at end of file